@@ -1,8 +1,15 @@
 package com.nphcswe.controller;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -10,21 +17,41 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import com.nphcswe.helper.ResponseMessage;
+import com.nphcswe.model.BatchResult;
 import com.nphcswe.model.Employee;
+import com.nphcswe.model.EmployeeAudit;
 import com.nphcswe.model.ResponseObject;
+import com.nphcswe.model.SalaryStatistics;
 import com.nphcswe.model.SearchResult;
+import com.nphcswe.model.UploadJob;
+import com.nphcswe.model.UploadResponseObject;
+import com.nphcswe.model.UploadResult;
+import com.nphcswe.model.UploadSession;
+import com.nphcswe.service.BulkheadService;
+import com.nphcswe.service.EmployeeAuditService;
 import com.nphcswe.service.EmployeeService;
+import com.nphcswe.service.SalaryStatisticsService;
+import com.nphcswe.service.UploadJobService;
+import com.nphcswe.service.UploadSessionService;
+import com.nphcswe.service.UploadSpoolService;
 
 @RestController
 public class EmployeeController {
@@ -32,37 +59,194 @@ public class EmployeeController {
 	@Autowired
 	private EmployeeService employeeService;
 
+	@Autowired
+	private UploadJobService uploadJobService;
+
+	@Autowired
+	private UploadSpoolService uploadSpoolService;
+
+	@Autowired
+	private UploadSessionService uploadSessionService;
+
+	@Autowired
+	private SalaryStatisticsService salaryStatisticsService;
+
+	@Autowired
+	private EmployeeAuditService employeeAuditService;
+
+	@Autowired
+	private BulkheadService bulkheadService;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	// employees of a sparse field set only hold the selected fields, the others
+	// are left out instead of written as null
+	private ObjectMapper sparseObjectMapper;
+
 	private static final Logger logger = LogManager.getLogger();
 
-	// upload csv
-	@RequestMapping(value = "/users/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, method = RequestMethod.POST)
-	public @ResponseBody ResponseEntity<ResponseObject> uploadEmployees(@RequestParam("file") MultipartFile file) {
+	@PostConstruct
+	public void init() {
+		sparseObjectMapper = objectMapper.copy();
+		sparseObjectMapper.configOverride(Employee.class)
+				.setInclude(JsonInclude.Value.construct(JsonInclude.Include.NON_NULL, null));
+	}
 
-		ResponseObject response = new ResponseObject(ResponseMessage.MSG_SUC_NO_CREATE);
+	// upload csv, uploads run on the upload pool and leave the container threads
+	// to the other endpoints
+	@RequestMapping(value = "/users/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, method = RequestMethod.POST)
+	public @ResponseBody CompletableFuture<ResponseEntity<ResponseObject>> uploadEmployees(
+			@RequestParam("file") MultipartFile file) {
 
 		logger.info("file name: {}, file size: {}", file.getOriginalFilename(), file.getSize());
 
-		Boolean uploadSuccess = employeeService.uploadAndSaveEmployee(file);
-		logger.info("uploadSuccesse: {}", uploadSuccess);
-		if (uploadSuccess) {
-			response.setMessage(ResponseMessage.MSG_SUC_CREATE_UPDATE);
+		return bulkheadService.upload(() -> toUploadResponse(employeeService.uploadAndSaveEmployee(file)));
+	}
+
+	// upload csv sent as the raw request body, spooled to disk as it arrives
+	@RequestMapping(value = "/users/upload", consumes = { "text/csv",
+			MediaType.APPLICATION_OCTET_STREAM_VALUE }, method = RequestMethod.POST)
+	public @ResponseBody CompletableFuture<ResponseEntity<ResponseObject>> uploadEmployeesStream(
+			InputStream requestBody) {
+
+		return bulkheadService.upload(() -> toUploadResponse(uploadSpoolService.uploadAndSaveEmployee(requestBody)));
+	}
+
+	private static ResponseEntity<ResponseObject> toUploadResponse(UploadResult uploadResult) {
+		logger.info("uploadResult: {}", uploadResult);
+
+		ResponseObject response = new UploadResponseObject(uploadResult);
+		if (uploadResult.isDataChanged()) {
 			return ResponseEntity.status(HttpStatus.CREATED).body(response);
 		}
 
 		return ResponseEntity.ok().body(response);
 	}
 
-	// fetch employee list
+	// upload csv in the background, progress is polled with the returned job id.
+	// The file is spooled for the job on the upload pool
+	@RequestMapping(value = "/users/upload", params = "async=true", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, method = RequestMethod.POST)
+	public @ResponseBody CompletableFuture<ResponseEntity<UploadJob>> uploadEmployeesAsync(
+			@RequestParam("file") MultipartFile file) {
+
+		logger.info("async file name: {}, file size: {}", file.getOriginalFilename(), file.getSize());
+
+		return bulkheadService
+				.upload(() -> ResponseEntity.status(HttpStatus.ACCEPTED).body(uploadJobService.submit(file)));
+	}
+
+	@RequestMapping(value = "/users/upload", params = "async=true", consumes = { "text/csv",
+			MediaType.APPLICATION_OCTET_STREAM_VALUE }, method = RequestMethod.POST)
+	public @ResponseBody CompletableFuture<ResponseEntity<UploadJob>> uploadEmployeesStreamAsync(
+			InputStream requestBody) {
+
+		return bulkheadService
+				.upload(() -> ResponseEntity.status(HttpStatus.ACCEPTED).body(uploadJobService.submit(requestBody)));
+	}
+
+	// upload job progress
+	@RequestMapping(value = "/users/upload/{jobId}", method = RequestMethod.GET)
+	public @ResponseBody UploadJob getUploadJob(@PathVariable String jobId) {
+
+		logger.info("job id: {}", jobId);
+
+		return uploadJobService.getJob(jobId);
+	}
+
+	// resumable upload, chunks are PUT to the session and committed as one csv
+	@RequestMapping(value = "/users/upload/sessions", method = RequestMethod.POST)
+	@ResponseStatus(HttpStatus.CREATED)
+	public @ResponseBody UploadSession createUploadSession() {
+
+		return uploadSessionService.createSession();
+	}
+
+	@RequestMapping(value = "/users/upload/sessions/{sessionId}", method = RequestMethod.GET)
+	public @ResponseBody UploadSession getUploadSession(@PathVariable String sessionId) {
+
+		return uploadSessionService.getSession(sessionId);
+	}
+
+	// the chunk is spooled on the upload pool as it arrives
+	@RequestMapping(value = "/users/upload/sessions/{sessionId}/chunks/{chunkNumber}", method = RequestMethod.PUT)
+	public @ResponseBody CompletableFuture<UploadSession> putUploadChunk(@PathVariable String sessionId,
+			@PathVariable int chunkNumber,
+			@RequestHeader(value = UploadSessionService.CHECKSUM_HEADER, required = false) String checksum,
+			InputStream requestBody) {
+
+		logger.info("session id: {}, chunk: {}, checksum: {}", sessionId, chunkNumber, checksum);
+
+		return bulkheadService.upload(() -> uploadSessionService.putChunk(sessionId, chunkNumber, checksum, requestBody));
+	}
+
+	@RequestMapping(value = "/users/upload/sessions/{sessionId}/commit", method = RequestMethod.POST)
+	public @ResponseBody CompletableFuture<ResponseEntity<ResponseObject>> commitUploadSession(
+			@PathVariable String sessionId, @RequestParam(value = "chunkCount", required = false) Integer chunkCount) {
+
+		return bulkheadService.upload(() -> toUploadResponse(uploadSessionService.commit(sessionId, chunkCount)));
+	}
+
+	// fetch employee list, a sparse field set is written without the fields
+	// left out
 	@RequestMapping(value = "/users", method = RequestMethod.GET)
-	public @ResponseBody SearchResult searchUsers(@RequestParam Map<String, String> searchCriteria) {
+	public @ResponseBody CompletableFuture<ResponseEntity<Object>> searchUsers(
+			@RequestParam Map<String, String> searchCriteria) {
 
 		logger.info("search criteria: {}", searchCriteria);
 
-		List<Employee> employeeList = new ArrayList<>();
+		boolean sparse = isSparse(searchCriteria);
+
+		return bulkheadService.search(() -> {
+			SearchResult searchResult = employeeService.searchEmployeeList(searchCriteria);
+			if (!sparse) {
+				return ResponseEntity.ok().body((Object) searchResult);
+			}
+
+			try {
+				return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+						.body((Object) sparseObjectMapper.writeValueAsString(searchResult));
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		});
+	}
 
-		employeeList = employeeService.searchEmployeeList(searchCriteria);
+	private static boolean isSparse(Map<String, String> searchCriteria) {
+		String fields = searchCriteria.get("fields");
+		return fields != null && !fields.trim().isEmpty();
+	}
 
-		return new SearchResult(employeeList);
+	// fetch employee list as newline delimited JSON, rows are written as they
+	// are read from the database. The search pool thread writes the response
+	// itself, a saturated pool answers 503 before the response starts
+	@RequestMapping(value = "/users", method = RequestMethod.GET, produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public CompletableFuture<Void> streamUsers(@RequestParam Map<String, String> searchCriteria,
+			HttpServletResponse response) {
+
+		logger.info("stream search criteria: {}", searchCriteria);
+
+		// errors have to surface before the response is committed
+		employeeService.validateSearchCriteria(searchCriteria);
+
+		ObjectWriter writer = (isSparse(searchCriteria) ? sparseObjectMapper : objectMapper).writerFor(Employee.class);
+
+		return bulkheadService.search(() -> {
+			response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+			try (SequenceWriter sequenceWriter = writer.withRootValueSeparator("\n")
+					.writeValues(response.getOutputStream())) {
+				employeeService.streamEmployeeList(searchCriteria, employee -> {
+					try {
+						sequenceWriter.write(employee);
+					} catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				});
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			return null;
+		});
 	}
 
 	// Create employee
@@ -79,15 +263,67 @@ public class EmployeeController {
 		return response;
 	}
 
+	// batch create, update and delete: one transaction per request and a result
+	// per item in request order
+	@RequestMapping(value = "/users/batch", method = RequestMethod.POST)
+	public @ResponseBody BatchResult createUsers(@RequestBody List<Employee> employeeList) {
+
+		logger.info("batch create: {} items", employeeList.size());
+
+		return employeeService.saveEmployeeBatch(employeeList);
+	}
+
+	@RequestMapping(value = "/users/batch", method = { RequestMethod.PUT, RequestMethod.PATCH })
+	public @ResponseBody BatchResult updateUsers(@RequestBody List<Employee> employeeList) {
+
+		logger.info("batch update: {} items", employeeList.size());
+
+		return employeeService.updateEmployeeBatch(employeeList);
+	}
+
+	@RequestMapping(value = "/users/batch", method = RequestMethod.DELETE)
+	public @ResponseBody BatchResult deleteUsers(@RequestBody List<String> idList) {
+
+		logger.info("batch delete: {} items", idList.size());
+
+		return employeeService.deleteEmployeeBatch(idList);
+	}
+
+	// salary statistics overall and by start date year
+	@RequestMapping(value = "/users/stats", method = RequestMethod.GET)
+	public @ResponseBody SalaryStatistics getSalaryStatistics() {
+		return salaryStatisticsService.getStatistics();
+	}
+
 	// get employee
 	@RequestMapping(value = "/users/{id}", method = RequestMethod.GET)
-	public @ResponseBody Employee getEmployeeById(@PathVariable String id) {
+	public @ResponseBody ResponseEntity<Employee> getEmployeeById(@PathVariable String id, WebRequest webRequest) {
 
 		logger.info("id: {}", id);
 
 		Employee employee = employeeService.getEmployee(id);
 		logger.info("employee unit test: {}", employee);
-		return employee;
+
+		// unchanged records are answered with 304 before the body is serialised
+		String eTag = toETag(employee);
+		if (webRequest.checkNotModified(eTag)) {
+			return null;
+		}
+		return ResponseEntity.ok().eTag(eTag).body(employee);
+	}
+
+	// strong ETag over the fields the response body is built from
+	private static String toETag(Employee employee) {
+		String content = employee.getId() + "|" + employee.getLogin() + "|" + employee.getName() + "|"
+				+ employee.getSalary() + "|"
+				+ (employee.getstartDate() != null ? employee.getstartDate().getTime() : null);
+		return "\"" + DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8)) + "\"";
+	}
+
+	// committed changes of the employee, oldest first
+	@RequestMapping(value = "/users/{id}/history", method = RequestMethod.GET)
+	public @ResponseBody List<EmployeeAudit> getEmployeeHistory(@PathVariable String id) {
+		return employeeAuditService.getHistory(id);
 	}
 
 	// delete employee
@@ -5,6 +5,7 @@ import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpHeaders;
@@ -14,16 +15,19 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 import com.nphcswe.helper.ResponseMessage;
 import com.nphcswe.helper.exception.BadInputException;
+import com.nphcswe.helper.exception.ServiceBusyException;
 import com.nphcswe.model.ResponseObject;
 
 @Order(Ordered.HIGHEST_PRECEDENCE)
@@ -32,8 +36,12 @@ public class CustomExceptionHandler extends ResponseEntityExceptionHandler {
 
 	private static final Logger logger = LogManager.getLogger();
 
+	@Value("${employee.upload.max-file-size:10MB}")
+	private DataSize maxFileSize;
+
+	// error bodies are always JSON, also for endpoints producing other types
 	private ResponseEntity<Object> buildResponseEntity(ResponseObject obj, HttpStatus status) {
-		return new ResponseEntity<>(obj, status);
+		return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(obj);
 	}
 
 	@ExceptionHandler(BadInputException.class)
@@ -43,6 +51,24 @@ public class CustomExceptionHandler extends ResponseEntityExceptionHandler {
 		return buildResponseEntity(new ResponseObject(ex.getMessage()), HttpStatus.BAD_REQUEST);
 	}
 
+	@ExceptionHandler(ServiceBusyException.class)
+	@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+	protected ResponseEntity<Object> handleServiceBusyException(ServiceBusyException ex) {
+		logger.warn(ex.getMessage());
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter().getSeconds()))
+				.contentType(MediaType.APPLICATION_JSON).body(new ResponseObject(ex.getMessage()));
+	}
+
+	@ExceptionHandler(MaxUploadSizeExceededException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	protected ResponseEntity<Object> handleMaxUploadSizeExceededException(MaxUploadSizeExceededException ex) {
+		logger.error(ex.getMessage(), ex);
+		return buildResponseEntity(
+				new ResponseObject(String.format(ResponseMessage.MSG_ERR_FILE_SIZE_LIMIT, maxFileSize)),
+				HttpStatus.BAD_REQUEST);
+	}
+
 	@ExceptionHandler(Exception.class)
 	@ResponseStatus(HttpStatus.BAD_REQUEST)
 	protected ResponseEntity<Object> handleAllException(Exception ex) {
@@ -0,0 +1,68 @@
+package com.nphcswe.helper;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.nphcswe.helper.exception.ServiceBusyException;
+
+// bounded pool for one kind of request. Once every thread is busy and the queue
+// is full a task is rejected straight away instead of waiting
+public class Bulkhead {
+
+	private final String name;
+
+	private final ThreadPoolExecutor executor;
+
+	private final Duration retryAfter;
+
+	private final LongAdder rejected = new LongAdder();
+
+	public Bulkhead(String name, int poolSize, int queueCapacity, Duration retryAfter) {
+		this.name = name;
+		this.retryAfter = retryAfter;
+
+		AtomicInteger threadCount = new AtomicInteger();
+		BlockingQueue<Runnable> queue = queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity)
+				: new SynchronousQueue<>();
+		this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS, queue,
+				runnable -> new Thread(runnable, name + "-request-" + threadCount.incrementAndGet()));
+	}
+
+	public <T> CompletableFuture<T> submit(Supplier<T> task) {
+		try {
+			return CompletableFuture.supplyAsync(task, executor);
+		} catch (RejectedExecutionException ex) {
+			rejected.increment();
+			throw new ServiceBusyException(String.format(ResponseMessage.MSG_ERR_SERVER_BUSY, name), retryAfter);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getActive() {
+		return executor.getActiveCount();
+	}
+
+	public int getQueued() {
+		return executor.getQueue().size();
+	}
+
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
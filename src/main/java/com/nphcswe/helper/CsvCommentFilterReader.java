@@ -0,0 +1,59 @@
+package com.nphcswe.helper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reader that drops CSV comment lines (lines starting with "#") on the fly, so
+ * the filtered content never has to be materialised in memory.
+ */
+public class CsvCommentFilterReader extends Reader {
+
+	private static final String COMMENT_PREFIX = "#";
+
+	private final BufferedReader reader;
+
+	private String line;
+
+	private int position;
+
+	public CsvCommentFilterReader(Reader reader) {
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		if (!nextLineAvailable()) {
+			return -1;
+		}
+
+		int count = Math.min(len, line.length() - position);
+		line.getChars(position, position + count, cbuf, off);
+		position += count;
+		return count;
+	}
+
+	private boolean nextLineAvailable() throws IOException {
+		while (line == null || position >= line.length()) {
+			String next = reader.readLine();
+			if (next == null) {
+				return false;
+			}
+			if (!next.startsWith(COMMENT_PREFIX)) {
+				line = next + "\n";
+				position = 0;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -1,6 +1,7 @@
 package com.nphcswe.helper;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,6 +16,8 @@ import com.nphcswe.helper.exception.BadInputException;
 public class CsvReader {
 	private static final Logger logger = LogManager.getLogger();
 
+	private static final CsvMapper CSV_MAPPER = new CsvMapper();
+
 	private CsvReader() {
 	}
 
@@ -38,4 +41,52 @@ public class CsvReader {
 		return resulttList;
 
 	}
-}
\ No newline at end of file
+
+	// lazily parse rows from the reader, only the current row is held in memory
+	public static <T> MappingIterator<T> toIterator(Class<T> clazz, Reader reader) {
+
+		CsvSchema csvSchema = CSV_MAPPER.typedSchemaFor(clazz).withHeader();
+
+		try {
+			return CSV_MAPPER.readerWithSchemaFor(clazz).with(csvSchema).readValues(reader);
+		} catch (IOException ex) {
+			throw toBadInputException(ex);
+		}
+	}
+
+	// read up to chunkSize rows, an empty list means the iterator is exhausted
+	public static <T> List<T> readChunk(MappingIterator<T> iterator, int chunkSize) {
+
+		List<T> chunk = new ArrayList<>(chunkSize);
+
+		try {
+			while (chunk.size() < chunkSize && iterator.hasNextValue()) {
+				chunk.add(iterator.nextValue());
+			}
+		} catch (IOException ex) {
+			throw toBadInputException(ex);
+		}
+		return chunk;
+	}
+
+	// parse a block of records which does not start with the header line
+	public static <T> List<T> parseRecords(Class<T> clazz, String records) {
+
+		CsvSchema csvSchema = CSV_MAPPER.typedSchemaFor(clazz);
+
+		try {
+			MappingIterator<T> iterator = CSV_MAPPER.readerWithSchemaFor(clazz).with(csvSchema).readValues(records);
+			return iterator.readAll();
+		} catch (IOException ex) {
+			throw toBadInputException(ex);
+		}
+	}
+
+	private static BadInputException toBadInputException(IOException ex) {
+		logger.error(ex.getMessage(), ex);
+		if (ex.getMessage() != null && ex.getMessage().toLowerCase().contains("too many entries")) {
+			return new BadInputException(ResponseMessage.MSG_ERR_CSV_COLUMN_FORMAT);
+		}
+		return new BadInputException(ResponseMessage.MSG_ERR_FILE_READING);
+	}
+}
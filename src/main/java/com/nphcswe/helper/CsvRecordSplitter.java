@@ -0,0 +1,46 @@
+package com.nphcswe.helper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits CSV text on record boundaries so blocks of records can be parsed
+ * independently. A line break inside a quoted value does not end a record.
+ */
+public class CsvRecordSplitter {
+
+	private final BufferedReader reader;
+
+	public CsvRecordSplitter(Reader reader) {
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+	}
+
+	// next block of up to recordCount records, null once the input is exhausted
+	public String nextRecords(int recordCount) throws IOException {
+
+		StringBuilder block = new StringBuilder();
+		int records = 0;
+		boolean inQuotes = false;
+
+		while (records < recordCount) {
+			String line = reader.readLine();
+			if (line == null) {
+				break;
+			}
+
+			block.append(line).append('\n');
+			for (int i = 0; i < line.length(); i++) {
+				if (line.charAt(i) == '"') {
+					inQuotes = !inQuotes;
+				}
+			}
+
+			if (!inQuotes) {
+				records++;
+			}
+		}
+
+		return block.length() > 0 ? block.toString() : null;
+	}
+}
@@ -0,0 +1,29 @@
+package com.nphcswe.helper;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+public class GzipUtil {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private GzipUtil() {
+	}
+
+	// detect gzip by its magic bytes and inflate as the stream is read
+	public static InputStream decompressIfGzip(InputStream in) throws IOException {
+
+		BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+		buffered.mark(2);
+		int first = buffered.read();
+		int second = buffered.read();
+		buffered.reset();
+
+		if (first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == (GZIPInputStream.GZIP_MAGIC >> 8)) {
+			return new GZIPInputStream(buffered, BUFFER_SIZE);
+		}
+		return buffered;
+	}
+}
@@ -0,0 +1,85 @@
+package com.nphcswe.helper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * InputStream over a memory-mapped file. The file is mapped one window at a
+ * time so files larger than 2GB can be read and only the pages being parsed
+ * are resident.
+ */
+public class MappedFileInputStream extends InputStream {
+
+	public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private final FileChannel channel;
+
+	private final long size;
+
+	private final int windowSize;
+
+	private long windowStart;
+
+	private MappedByteBuffer window;
+
+	public MappedFileInputStream(Path file) throws IOException {
+		this(file, DEFAULT_WINDOW_SIZE);
+	}
+
+	public MappedFileInputStream(Path file, int windowSize) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.size = channel.size();
+		this.windowSize = windowSize;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextWindowAvailable()) {
+			return -1;
+		}
+		return window.get() & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		if (!nextWindowAvailable()) {
+			return -1;
+		}
+
+		int count = Math.min(len, window.remaining());
+		window.get(b, off, count);
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return window != null ? window.remaining() : 0;
+	}
+
+	private boolean nextWindowAvailable() throws IOException {
+		while (window == null || !window.hasRemaining()) {
+			long nextStart = window == null ? 0 : windowStart + window.capacity();
+			if (nextStart >= size) {
+				return false;
+			}
+
+			windowStart = nextStart;
+			window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(windowSize, size - windowStart));
+		}
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+}
@@ -19,7 +19,7 @@ public class ResponseMessage {
 	public static final String MSG_ERR_NOT_UNIQUE = "not unique";
 	// public static final String MSG_ERR_INVALID = "Invalid salary";
 	public static final String MSG_ERR_UNKNOWN = "Unknown Error";
-	public static final String MSG_ERR_FILE_SIZE_LIMIT_10MB = "File size exceeed limit of 10MB";
+	public static final String MSG_ERR_FILE_SIZE_LIMIT = "File size exceeds limit of %s";
 
 	public static final String MSG_ERR_NOT_UNIQUE_FIELD = "%s exists and not unique";
 	public static final String MSG_ERR_NOT_UNIQUE_IDS = "ID [%s] not unique";
@@ -44,4 +44,15 @@ public class ResponseMessage {
 	public static final String MSG_ERR_CSV_COLUMN_FORMAT = "CSV has more than expected columns of 5";
 	public static final String MSG_ERR_FILE_READING = "Error reading file, please try again";
 	public static final String MSG_ERR_REQUEST_INVALID = "Request body is invalid";
+	public static final String MSG_ERR_NO_SUCH_UPLOAD_JOB = "No such upload job";
+	public static final String MSG_ERR_UPLOAD_QUEUE_FULL = "Upload queue is full, please try again later";
+	public static final String MSG_ERR_NO_SUCH_UPLOAD_SESSION = "No such upload session";
+	public static final String MSG_ERR_UPLOAD_SESSION_COMMITTING = "Upload session is being committed";
+	public static final String MSG_ERR_CHUNK_CHECKSUM = "Chunk %s checksum mismatch";
+	public static final String MSG_ERR_MISSING_CHUNKS = "Missing chunks %s";
+	public static final String MSG_ERR_CHUNK_LIMIT = "Chunk number must be below %s";
+	public static final String MSG_ERR_BATCH_SIZE_LIMIT = "Batch exceeds limit of %s items";
+	public static final String MSG_ERR_PAGE_SIZE_LIMIT = "Limit exceeds maximum page size of %s";
+	public static final String MSG_ERR_SERVER_BUSY = "Too many %s requests, please try again later";
+	public static final String MSG_ERR_WRITE_CONFLICT = "Employee is being changed by another request, please try again later";
 }
\ No newline at end of file
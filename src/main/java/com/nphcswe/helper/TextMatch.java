@@ -0,0 +1,61 @@
+package com.nphcswe.helper;
+
+import java.util.Locale;
+
+// case-insensitive substring match, a trailing * asks for a prefix match
+public class TextMatch {
+
+	private static final char LIKE_ESCAPE = '\\';
+
+	private final String value;
+
+	private final boolean prefix;
+
+	private TextMatch(String value, boolean prefix) {
+		this.value = value;
+		this.prefix = prefix;
+	}
+
+	// null when there is nothing to match on
+	public static TextMatch parse(String pattern) {
+		if (pattern == null) {
+			return null;
+		}
+
+		boolean prefix = pattern.endsWith("*");
+		String value = (prefix ? pattern.substring(0, pattern.length() - 1) : pattern).toLowerCase(Locale.ROOT);
+		if (value.isEmpty()) {
+			return null;
+		}
+		return new TextMatch(value, prefix);
+	}
+
+	public static String toLowerCase(String text) {
+		return text == null ? null : text.toLowerCase(Locale.ROOT);
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	public boolean isPrefix() {
+		return prefix;
+	}
+
+	// text has to be lower case already
+	public boolean matches(String lowerCaseText) {
+		if (lowerCaseText == null) {
+			return false;
+		}
+		return prefix ? lowerCaseText.startsWith(value) : lowerCaseText.contains(value);
+	}
+
+	public char getLikeEscape() {
+		return LIKE_ESCAPE;
+	}
+
+	public String toLikePattern() {
+		String escaped = value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+		return prefix ? escaped + "%" : "%" + escaped + "%";
+	}
+}
@@ -0,0 +1,21 @@
+package com.nphcswe.helper.exception;
+
+import java.time.Duration;
+
+// the request was turned away because its pool is saturated, answered with 503
+// and a Retry-After header
+public class ServiceBusyException extends RuntimeException {
+
+	private static final long serialVersionUID = 4815310712052373402L;
+
+	private final Duration retryAfter;
+
+	public ServiceBusyException(String message, Duration retryAfter) {
+		super(message);
+		this.retryAfter = retryAfter;
+	}
+
+	public Duration getRetryAfter() {
+		return retryAfter;
+	}
+}
@@ -0,0 +1,33 @@
+package com.nphcswe.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// outcome of one item of a batch, the status is the one the single item
+// endpoint would have answered with
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+
+	private final String id;
+
+	private final int status;
+
+	private final String message;
+
+	public BatchItemResult(String id, int status, String message) {
+		this.id = id;
+		this.status = status;
+		this.message = message;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+}
@@ -0,0 +1,42 @@
+package com.nphcswe.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+
+// per item results of a batch request, in request order
+public class BatchResult {
+
+	private final BatchItemResult[] results;
+
+	private int succeeded;
+
+	private int failed;
+
+	public BatchResult(int size) {
+		this.results = new BatchItemResult[size];
+	}
+
+	public List<BatchItemResult> getResults() {
+		return Arrays.asList(results);
+	}
+
+	public int getSucceeded() {
+		return succeeded;
+	}
+
+	public int getFailed() {
+		return failed;
+	}
+
+	public void success(int index, String id, HttpStatus status, String message) {
+		results[index] = new BatchItemResult(id, status.value(), message);
+		succeeded++;
+	}
+
+	public void failure(int index, String id, String message) {
+		results[index] = new BatchItemResult(id, HttpStatus.BAD_REQUEST.value(), message);
+		failed++;
+	}
+}
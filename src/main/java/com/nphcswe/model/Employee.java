@@ -1,13 +1,15 @@
 package com.nphcswe.model;
 
+import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.text.DecimalFormat;
 import java.util.Date;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -15,16 +17,20 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.nphcswe.helper.DateDeserialiser;
 
 @Entity
-@Table(name = "Employees_Table")
+// sort indexes end with the id, the tie breaker of every sort order
+@Table(name = "Employees_Table", indexes = { @Index(name = "IDX_EMPLOYEES_SALARY", columnList = "salary, id"),
+		@Index(name = "IDX_EMPLOYEES_NAME", columnList = "name, id"),
+		@Index(name = "IDX_EMPLOYEES_START_DATE", columnList = "startDate, id") }, uniqueConstraints = @UniqueConstraint(
+				name = Employee.LOGIN_CONSTRAINT, columnNames = "login"))
 public class Employee {
 
-	private static DecimalFormat df2 = new DecimalFormat("#.##");
+	// named so a violation can be told apart from a duplicate id
+	public static final String LOGIN_CONSTRAINT = "UK_EMPLOYEES_LOGIN";
 
 	@Id
 	@Column(unique = true)
 	private String id;
 
-	@Column(unique = true)
 	private String login;
 
 	private String name;
@@ -70,9 +76,9 @@ public class Employee {
 
 	public void setSalary(Double salary) {
 
+		// truncate to 2 decimals, rows are deserialised on parallel upload workers
 		if (salary != null) {
-			df2.setRoundingMode(RoundingMode.DOWN);
-			salary = Double.valueOf(df2.format(salary));
+			salary = BigDecimal.valueOf(salary).setScale(2, RoundingMode.DOWN).doubleValue();
 		}
 		this.salary = salary;
 	}
@@ -156,6 +162,30 @@ public class Employee {
 		return sb.toString();
 	}
 
+	// true when employeeUpdate(employee) would change any field
+	@JsonIgnore
+	public boolean isChangedBy(Employee employee) {
+		if (!employee.isNullLogin() && !employee.getLogin().equals(login)) {
+			return true;
+		}
+
+		if (!employee.isNullName() && !employee.getName().equals(name)) {
+			return true;
+		}
+
+		if (!employee.isNullSalary() && !employee.getSalary().equals(salary)) {
+			return true;
+		}
+
+		// compare instants, the database hands back java.sql.Timestamp
+		if (employee.isValidStartDate()
+				&& (startDate == null || employee.getstartDate().getTime() != startDate.getTime())) {
+			return true;
+		}
+
+		return false;
+	}
+
 	@JsonIgnore
 	public Employee employeeUpdate(Employee employee) {
 		if (!employee.isNullLogin()) {
@@ -0,0 +1,96 @@
+package com.nphcswe.model;
+
+import java.time.Instant;
+
+import javax.persistence.AttributeOverride;
+import javax.persistence.AttributeOverrides;
+import javax.persistence.Column;
+import javax.persistence.Embedded;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// one committed change of an employee, before is null for a create and after
+// for a delete
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Entity
+@Table(name = "Employee_Audit", indexes = @Index(name = "IDX_EMPLOYEE_AUDIT_EMPLOYEE", columnList = "employeeId, changedAt, id"))
+public class EmployeeAudit {
+
+	// sequence ids are allocated in blocks so the background writer can batch
+	// its inserts, an identity column would disable JDBC batching
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "employee_audit_seq")
+	@SequenceGenerator(name = "employee_audit_seq", sequenceName = "EMPLOYEE_AUDIT_SEQ", allocationSize = 500)
+	private Long id;
+
+	@Column(nullable = false)
+	private String employeeId;
+
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false)
+	private EmployeeChangeEvent.Type type;
+
+	// taken under the employee's lock, orders the history of one employee
+	@Column(nullable = false)
+	private Instant changedAt;
+
+	@Embedded
+	@AttributeOverrides({ @AttributeOverride(name = "login", column = @Column(name = "before_login")),
+			@AttributeOverride(name = "name", column = @Column(name = "before_name")),
+			@AttributeOverride(name = "salary", column = @Column(name = "before_salary")),
+			@AttributeOverride(name = "startDate", column = @Column(name = "before_start_date")) })
+	private EmployeeImage before;
+
+	@Embedded
+	@AttributeOverrides({ @AttributeOverride(name = "login", column = @Column(name = "after_login")),
+			@AttributeOverride(name = "name", column = @Column(name = "after_name")),
+			@AttributeOverride(name = "salary", column = @Column(name = "after_salary")),
+			@AttributeOverride(name = "startDate", column = @Column(name = "after_start_date")) })
+	private EmployeeImage after;
+
+	protected EmployeeAudit() {
+	}
+
+	// the images are taken when the write happens, not when the entry is stored
+	public EmployeeAudit(EmployeeChangeEvent.Type type, String employeeId, EmployeeImage before,
+			EmployeeImage after) {
+		this.type = type;
+		this.employeeId = employeeId;
+		this.changedAt = Instant.now();
+		this.before = before;
+		this.after = after;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getEmployeeId() {
+		return employeeId;
+	}
+
+	public EmployeeChangeEvent.Type getType() {
+		return type;
+	}
+
+	public Instant getChangedAt() {
+		return changedAt;
+	}
+
+	public EmployeeImage getBefore() {
+		return before;
+	}
+
+	public EmployeeImage getAfter() {
+		return after;
+	}
+}
@@ -0,0 +1,60 @@
+package com.nphcswe.model;
+
+import java.util.Collections;
+import java.util.List;
+
+// published once employees are written, listeners act after the commit
+public class EmployeeChangeEvent {
+
+	public enum Type {
+		CREATED, UPDATED, DELETED, UPLOADED
+	}
+
+	private final Type type;
+
+	// null for uploads, which change many employees at once
+	private final String employeeId;
+
+	// salaries the write added and removed, null when unknown
+	private final SalaryStatistics salaryDelta;
+
+	// before and after images of every employee the write changed, empty for
+	// uploads, which store theirs chunk by chunk
+	private final List<EmployeeAudit> audit;
+
+	public EmployeeChangeEvent(Type type, String employeeId) {
+		this(type, employeeId, null);
+	}
+
+	public EmployeeChangeEvent(Type type, String employeeId, SalaryStatistics salaryDelta) {
+		this(type, employeeId, salaryDelta, Collections.emptyList());
+	}
+
+	public EmployeeChangeEvent(Type type, String employeeId, SalaryStatistics salaryDelta, List<EmployeeAudit> audit) {
+		this.type = type;
+		this.employeeId = employeeId;
+		this.salaryDelta = salaryDelta;
+		this.audit = audit;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getEmployeeId() {
+		return employeeId;
+	}
+
+	public SalaryStatistics getSalaryDelta() {
+		return salaryDelta;
+	}
+
+	public List<EmployeeAudit> getAudit() {
+		return audit;
+	}
+
+	@Override
+	public String toString() {
+		return "EmployeeChangeEvent[type=" + type + ",employeeId=" + employeeId + "]";
+	}
+}
@@ -0,0 +1,52 @@
+package com.nphcswe.model;
+
+import java.util.Date;
+
+import javax.persistence.Embeddable;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+// the audited fields of an employee at one point in time
+@Embeddable
+public class EmployeeImage {
+
+	private String login;
+
+	private String name;
+
+	private Double salary;
+
+	private Date startDate;
+
+	protected EmployeeImage() {
+	}
+
+	private EmployeeImage(Employee employee) {
+		this.login = employee.getLogin();
+		this.name = employee.getName();
+		this.salary = employee.getSalary();
+		this.startDate = employee.getstartDate() != null ? new Date(employee.getstartDate().getTime()) : null;
+	}
+
+	// a copy, later changes to the employee do not show in the image
+	public static EmployeeImage of(Employee employee) {
+		return employee != null ? new EmployeeImage(employee) : null;
+	}
+
+	public String getLogin() {
+		return login;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Double getSalary() {
+		return salary;
+	}
+
+	@JsonFormat(pattern = "yyyy-MM-dd")
+	public Date getStartDate() {
+		return startDate;
+	}
+}
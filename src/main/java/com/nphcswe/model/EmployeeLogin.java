@@ -0,0 +1,9 @@
+package com.nphcswe.model;
+
+// projection of the login owned by an employee id
+public interface EmployeeLogin {
+
+	String getId();
+
+	String getLogin();
+}
@@ -0,0 +1,188 @@
+package com.nphcswe.model;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Mergeable salary summary. Count and sum are exact, the sum is kept in cents.
+ * Quantiles come from logarithmic buckets with 1% relative accuracy, buckets
+ * only hold counts so values can be removed and negative deltas merged. Min and
+ * max are exact until a delta removes an extreme without adding it back, then
+ * they are read from the buckets like the quantiles.
+ */
+@JsonPropertyOrder({ "count", "sum", "min", "max", "mean", "p50", "p90", "p99" })
+public class SalarySketch {
+
+	private static final double RELATIVE_ACCURACY = 0.01;
+
+	private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+
+	private static final double LOG_GAMMA = Math.log(GAMMA);
+
+	// bucket of zero salaries, logarithmic buckets only hold positive values
+	private static final int ZERO_BUCKET = Integer.MIN_VALUE;
+
+	private long count;
+
+	private long sumCents;
+
+	private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+
+	// extremes of the added values
+	private double min = Double.POSITIVE_INFINITY;
+
+	private double max = Double.NEGATIVE_INFINITY;
+
+	// extremes of the removed values, used when this sketch is merged as a delta
+	private double removedMin = Double.POSITIVE_INFINITY;
+
+	private double removedMax = Double.NEGATIVE_INFINITY;
+
+	private boolean extremesExact = true;
+
+	public void add(double salary) {
+		count++;
+		sumCents += Math.round(salary * 100);
+		buckets.merge(bucketOf(salary), 1L, SalarySketch::sumOrNull);
+		min = Math.min(min, salary);
+		max = Math.max(max, salary);
+	}
+
+	public void remove(double salary) {
+		count--;
+		sumCents -= Math.round(salary * 100);
+		buckets.merge(bucketOf(salary), -1L, SalarySketch::sumOrNull);
+		removedMin = Math.min(removedMin, salary);
+		removedMax = Math.max(removedMax, salary);
+	}
+
+	public void merge(SalarySketch other) {
+		// a removed extreme may have been the last of its value, unless the delta
+		// adds the same or a further value again, as an update keeping the
+		// salary does
+		if (other.removedMin <= min && other.min > other.removedMin
+				|| other.removedMax >= max && other.max < other.removedMax) {
+			extremesExact = false;
+		}
+
+		count += other.count;
+		sumCents += other.sumCents;
+		other.buckets.forEach((bucket, bucketCount) -> {
+			if (bucketCount != 0) {
+				buckets.merge(bucket, bucketCount, SalarySketch::sumOrNull);
+			}
+		});
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		removedMin = Math.min(removedMin, other.removedMin);
+		removedMax = Math.max(removedMax, other.removedMax);
+		extremesExact &= other.extremesExact;
+
+		// nothing left, the next added value is exact again
+		if (count == 0 && buckets.isEmpty()) {
+			min = Double.POSITIVE_INFINITY;
+			max = Double.NEGATIVE_INFINITY;
+			extremesExact = true;
+		}
+	}
+
+	public SalarySketch copy() {
+		SalarySketch copy = new SalarySketch();
+		copy.count = count;
+		copy.sumCents = sumCents;
+		copy.buckets.putAll(buckets);
+		copy.min = min;
+		copy.max = max;
+		copy.removedMin = removedMin;
+		copy.removedMax = removedMax;
+		copy.extremesExact = extremesExact;
+		return copy;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getSum() {
+		return sumCents / 100.0;
+	}
+
+	public Double getMin() {
+		if (count <= 0) {
+			return null;
+		}
+		return extremesExact ? min : valueOf(buckets.firstKey());
+	}
+
+	public Double getMax() {
+		if (count <= 0) {
+			return null;
+		}
+		return extremesExact ? max : valueOf(buckets.lastKey());
+	}
+
+	public Double getMean() {
+		if (count <= 0) {
+			return null;
+		}
+		return sumCents / 100.0 / count;
+	}
+
+	public Double getP50() {
+		return quantile(0.5);
+	}
+
+	public Double getP90() {
+		return quantile(0.9);
+	}
+
+	public Double getP99() {
+		return quantile(0.99);
+	}
+
+	@JsonIgnore
+	public boolean isEmpty() {
+		return count <= 0;
+	}
+
+	// nearest rank, clamped to the extremes while they are exact
+	public Double quantile(double quantile) {
+		if (count <= 0) {
+			return null;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(quantile * count));
+		long seen = 0;
+		for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+			seen += bucket.getValue();
+			if (seen >= rank) {
+				double value = valueOf(bucket.getKey());
+				return extremesExact ? Math.max(min, Math.min(max, value)) : value;
+			}
+		}
+		return getMax();
+	}
+
+	// empty buckets are dropped, the first and last key are values still held
+	private static Long sumOrNull(Long a, Long b) {
+		return a + b == 0 ? null : a + b;
+	}
+
+	private static int bucketOf(double salary) {
+		if (salary <= 0) {
+			return ZERO_BUCKET;
+		}
+		return (int) Math.ceil(Math.log(salary) / LOG_GAMMA);
+	}
+
+	// the value within RELATIVE_ACCURACY of every salary in the bucket
+	private static double valueOf(int bucket) {
+		if (bucket == ZERO_BUCKET) {
+			return 0;
+		}
+		return 2 * Math.pow(GAMMA, bucket) / (GAMMA + 1);
+	}
+}
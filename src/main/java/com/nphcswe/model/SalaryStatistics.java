@@ -0,0 +1,68 @@
+package com.nphcswe.model;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+// salary sketches overall and by start date year, also used as a delta of
+// the rows a write added and removed
+public class SalaryStatistics {
+
+	private static final ZoneId ZONE = ZoneId.systemDefault();
+
+	private SalarySketch overall = new SalarySketch();
+
+	private final Map<Integer, SalarySketch> byStartYear = new TreeMap<>();
+
+	public void add(Employee employee) {
+		if (employee.isNullSalary() || employee.isNullstartDate()) {
+			return;
+		}
+
+		overall.add(employee.getSalary());
+		byStartYear.computeIfAbsent(yearOf(employee), year -> new SalarySketch()).add(employee.getSalary());
+	}
+
+	public void remove(Employee employee) {
+		if (employee.isNullSalary() || employee.isNullstartDate()) {
+			return;
+		}
+
+		overall.remove(employee.getSalary());
+		byStartYear.computeIfAbsent(yearOf(employee), year -> new SalarySketch()).remove(employee.getSalary());
+	}
+
+	public void merge(SalaryStatistics other) {
+		overall.merge(other.overall);
+		other.byStartYear.forEach(
+				(year, sketch) -> byStartYear.computeIfAbsent(year, key -> new SalarySketch()).merge(sketch));
+		byStartYear.values().removeIf(sketch -> sketch.getCount() == 0);
+	}
+
+	public SalaryStatistics copy() {
+		SalaryStatistics copy = new SalaryStatistics();
+		copy.overall = overall.copy();
+		byStartYear.forEach((year, sketch) -> copy.byStartYear.put(year, sketch.copy()));
+		return copy;
+	}
+
+	public SalarySketch getOverall() {
+		return overall;
+	}
+
+	public Map<Integer, SalarySketch> getByStartYear() {
+		return byStartYear;
+	}
+
+	@JsonIgnore
+	public boolean isEmpty() {
+		return overall.isEmpty() && byStartYear.isEmpty();
+	}
+
+	private static int yearOf(Employee employee) {
+		return Instant.ofEpochMilli(employee.getstartDate().getTime()).atZone(ZONE).getYear();
+	}
+}
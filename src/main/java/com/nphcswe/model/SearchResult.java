@@ -2,14 +2,25 @@ package com.nphcswe.model;
 
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class SearchResult {
 
 	private List<Employee> results;
 
+	// only present when another page follows
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private String nextCursor;
+
 	public SearchResult(List<Employee> result) {
 		this.results = result;
 	}
 
+	public SearchResult(List<Employee> result, String nextCursor) {
+		this.results = result;
+		this.nextCursor = nextCursor;
+	}
+
 	public List<Employee> getResults() {
 		return results;
 	}
@@ -18,4 +29,8 @@ public class SearchResult {
 		this.results = result;
 	}
 
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
 }
\ No newline at end of file
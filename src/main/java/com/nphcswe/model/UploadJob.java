@@ -0,0 +1,89 @@
+package com.nphcswe.model;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+// progress of an asynchronous CSV upload, updated by the upload worker thread
+public class UploadJob {
+
+	public enum State {
+		QUEUED, RUNNING, COMPLETED, FAILED
+	}
+
+	private final String jobId;
+
+	private volatile State state = State.QUEUED;
+
+	private volatile long rowsProcessed;
+
+	private volatile Instant startedAt;
+
+	private volatile Instant finishedAt;
+
+	private volatile ResponseObject result;
+
+	public UploadJob(String jobId) {
+		this.jobId = jobId;
+	}
+
+	public String getJobId() {
+		return jobId;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public long getRowsProcessed() {
+		return rowsProcessed;
+	}
+
+	public double getRowsPerSecond() {
+		if (startedAt == null) {
+			return 0;
+		}
+
+		Instant end = finishedAt != null ? finishedAt : Instant.now();
+		long millis = Math.max(1, Duration.between(startedAt, end).toMillis());
+		return rowsProcessed * 1000.0 / millis;
+	}
+
+	public ResponseObject getResult() {
+		return result;
+	}
+
+	@JsonIgnore
+	public Instant getFinishedAt() {
+		return finishedAt;
+	}
+
+	public void setRowsProcessed(long rowsProcessed) {
+		this.rowsProcessed = rowsProcessed;
+	}
+
+	public void start() {
+		this.startedAt = Instant.now();
+		this.state = State.RUNNING;
+	}
+
+	public void complete(ResponseObject result) {
+		finish(State.COMPLETED, result);
+	}
+
+	public void fail(ResponseObject result) {
+		finish(State.FAILED, result);
+	}
+
+	private void finish(State state, ResponseObject result) {
+		this.result = result;
+		this.finishedAt = Instant.now();
+		this.state = state;
+	}
+
+	@JsonIgnore
+	public boolean isExpired(Instant now, Duration ttl) {
+		return finishedAt != null && finishedAt.plus(ttl).isBefore(now);
+	}
+}
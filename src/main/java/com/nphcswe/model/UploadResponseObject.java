@@ -0,0 +1,28 @@
+package com.nphcswe.model;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.nphcswe.helper.ResponseMessage;
+
+// getters only, the order of the counts is not left to reflection
+@JsonPropertyOrder({ "message", "created", "updated", "unchanged" })
+public class UploadResponseObject extends ResponseObject {
+
+	private final UploadResult uploadResult;
+
+	public UploadResponseObject(UploadResult uploadResult) {
+		super(uploadResult.isDataChanged() ? ResponseMessage.MSG_SUC_CREATE_UPDATE : ResponseMessage.MSG_SUC_NO_CREATE);
+		this.uploadResult = uploadResult;
+	}
+
+	public long getCreated() {
+		return uploadResult.getCreated();
+	}
+
+	public long getUpdated() {
+		return uploadResult.getUpdated();
+	}
+
+	public long getUnchanged() {
+		return uploadResult.getUnchanged();
+	}
+}
@@ -0,0 +1,56 @@
+package com.nphcswe.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+// row counts of a CSV upload
+public class UploadResult {
+
+	private long created;
+
+	private long updated;
+
+	private long unchanged;
+
+	public UploadResult() {
+	}
+
+	public UploadResult(long created, long updated, long unchanged) {
+		this.created = created;
+		this.updated = updated;
+		this.unchanged = unchanged;
+	}
+
+	public long getCreated() {
+		return created;
+	}
+
+	public long getUpdated() {
+		return updated;
+	}
+
+	public long getUnchanged() {
+		return unchanged;
+	}
+
+	public void addCreated() {
+		created++;
+	}
+
+	public void addUpdated() {
+		updated++;
+	}
+
+	public void addUnchanged() {
+		unchanged++;
+	}
+
+	@JsonIgnore
+	public boolean isDataChanged() {
+		return created > 0 || updated > 0;
+	}
+
+	@Override
+	public String toString() {
+		return "UploadResult[created=" + created + ",updated=" + updated + ",unchanged=" + unchanged + "]";
+	}
+}
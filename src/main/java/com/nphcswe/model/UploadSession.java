@@ -0,0 +1,111 @@
+package com.nphcswe.model;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+// chunked upload in progress, verified chunks are kept on disk until commit
+public class UploadSession {
+
+	private final String sessionId;
+
+	private final Path chunkDirectory;
+
+	private final ConcurrentSkipListMap<Integer, Long> chunkSizeList = new ConcurrentSkipListMap<>();
+
+	// guarded by the session, chunks are only replaced while it is false
+	private volatile boolean committing;
+
+	private volatile Instant lastUpdated = Instant.now();
+
+	public UploadSession(String sessionId, Path chunkDirectory) {
+		this.sessionId = sessionId;
+		this.chunkDirectory = chunkDirectory;
+	}
+
+	public String getSessionId() {
+		return sessionId;
+	}
+
+	public Set<Integer> getReceivedChunks() {
+		return chunkSizeList.keySet();
+	}
+
+	public long getReceivedBytes() {
+		return chunkSizeList.values().stream().mapToLong(Long::longValue).sum();
+	}
+
+	// size of a received chunk, 0 when it has not been received
+	@JsonIgnore
+	public long getChunkSize(int chunkNumber) {
+		return chunkSizeList.getOrDefault(chunkNumber, 0L);
+	}
+
+	@JsonIgnore
+	public Path getChunkDirectory() {
+		return chunkDirectory;
+	}
+
+	@JsonIgnore
+	public Path getChunkFile(int chunkNumber) {
+		return chunkDirectory.resolve("chunk-" + chunkNumber);
+	}
+
+	public void chunkReceived(int chunkNumber, long size) {
+		chunkSizeList.put(chunkNumber, size);
+		lastUpdated = Instant.now();
+	}
+
+	// chunks 0 to chunkCount - 1 which have not been received, without a count the
+	// highest received chunk marks the end
+	@JsonIgnore
+	public List<Integer> getMissingChunks(Integer chunkCount) {
+		int expected = chunkCount != null ? chunkCount : chunkSizeList.isEmpty() ? 0 : chunkSizeList.lastKey() + 1;
+
+		List<Integer> missingChunks = new ArrayList<>();
+		for (int i = 0; i < expected; i++) {
+			if (!chunkSizeList.containsKey(i)) {
+				missingChunks.add(i);
+			}
+		}
+		return missingChunks;
+	}
+
+	@JsonIgnore
+	public List<Path> getChunkFiles(int chunkCount) {
+		List<Path> chunkFiles = new ArrayList<>();
+		for (int i = 0; i < chunkCount; i++) {
+			chunkFiles.add(getChunkFile(i));
+		}
+		return chunkFiles;
+	}
+
+	@JsonIgnore
+	public boolean isCommitting() {
+		return committing;
+	}
+
+	public synchronized boolean startCommit() {
+		if (committing) {
+			return false;
+		}
+		committing = true;
+		return true;
+	}
+
+	public synchronized void endCommit() {
+		lastUpdated = Instant.now();
+		committing = false;
+	}
+
+	@JsonIgnore
+	public boolean isExpired(Instant now, Duration ttl) {
+		return !isCommitting() && lastUpdated.plus(ttl).isBefore(now);
+	}
+}
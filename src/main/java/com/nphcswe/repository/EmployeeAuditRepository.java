@@ -0,0 +1,15 @@
+package com.nphcswe.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.nphcswe.model.EmployeeAudit;
+
+public interface EmployeeAuditRepository extends JpaRepository<EmployeeAudit, Long> {
+
+	// changes of one employee take its lock in turn and are timed while they
+	// hold it. Queued entries are numbered when they are written, upload entries
+	// when their chunk is, so the id alone does not follow the lock order
+	public List<EmployeeAudit> findByEmployeeIdOrderByChangedAtAscIdAsc(String employeeId);
+}
@@ -1,11 +1,50 @@
 package com.nphcswe.repository;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.persistence.LockModeType;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.nphcswe.model.Employee;
+import com.nphcswe.model.EmployeeLogin;
+
+public interface EmployeeRepository extends JpaRepository<Employee, String>, JpaSpecificationExecutor<Employee>,
+		EmployeeRepositoryCustom {
+
+	// SELECT ... FOR UPDATE, the row read is the row the update replaces
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select e from Employee e where e.id = :id")
+	public Optional<Employee> findForUpdateById(@Param("id") String id);
+
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select e from Employee e where e.id in :ids")
+	public List<Employee> findForUpdateByIdIn(@Param("ids") Collection<String> ids);
+
+	@Query("select e.id from Employee e where e.id in :ids")
+	public List<String> findExistingIds(@Param("ids") Collection<String> ids);
+
+	@Query("select e.id as id, e.login as login from Employee e where e.login in :logins")
+	public List<EmployeeLogin> findByLoginIn(@Param("logins") Collection<String> logins);
 
-public interface EmployeeRepository extends JpaRepository<Employee, String>, JpaSpecificationExecutor<Employee> {
+	// logins of the map which already belong to another id, in a single query
+	public default Set<String> findConflictingLogins(Map<String, String> idByLogin) {
+		if (idByLogin.isEmpty()) {
+			return Collections.emptySet();
+		}
 
-	public boolean existsByLoginAndIdNot(String login, String id);
+		return findByLoginIn(idByLogin.keySet()).stream()
+				.filter(owner -> !owner.getId().equals(idByLogin.get(owner.getLogin()))).map(EmployeeLogin::getLogin)
+				.collect(Collectors.toSet());
+	}
 }
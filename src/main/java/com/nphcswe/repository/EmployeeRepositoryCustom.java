@@ -0,0 +1,33 @@
+package com.nphcswe.repository;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import com.nphcswe.model.Employee;
+
+public interface EmployeeRepositoryCustom {
+
+	// at most limit rows, without the count query a Pageable would issue
+	public List<Employee> findAll(Specification<Employee> specification, Sort sort, int limit);
+
+	// only the given attributes are selected and set on unmanaged employees, all
+	// of them when fields is null
+	public List<Employee> findAll(Specification<Employee> specification, Sort sort, Set<String> fields, int limit);
+
+	// rows are fetched from the cursor as the stream is consumed, the caller
+	// closes the stream inside a transaction
+	public Stream<Employee> streamAll(Specification<Employee> specification, Sort sort);
+
+	public Stream<Employee> streamAll(Specification<Employee> specification, Sort sort, Set<String> fields);
+
+	// a single INSERT, unlike save() no SELECT is issued for the assigned id.
+	// Duplicate ids and logins fail on the table constraints
+	public void insert(Employee employee);
+
+	// INSERTs flushed together, hibernate sends them as JDBC batches
+	public void insertAll(List<Employee> employeeList);
+}
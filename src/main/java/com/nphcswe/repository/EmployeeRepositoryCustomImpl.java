@@ -0,0 +1,149 @@
+package com.nphcswe.repository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.AbstractQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.nphcswe.model.Employee;
+
+public class EmployeeRepositoryCustomImpl implements EmployeeRepositoryCustom {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Value("${employee.search.fetch-size:500}")
+	private int fetchSize;
+
+	@Override
+	public List<Employee> findAll(Specification<Employee> specification, Sort sort, int limit) {
+		return findAll(specification, sort, null, limit);
+	}
+
+	@Override
+	public List<Employee> findAll(Specification<Employee> specification, Sort sort, Set<String> fields, int limit) {
+
+		if (fields == null) {
+			return limit(createQuery(specification, sort), limit).getResultList();
+		}
+
+		return limit(createTupleQuery(specification, sort, fields), limit).getResultList().stream()
+				.map(tuple -> toEmployee(tuple, fields)).collect(Collectors.toList());
+	}
+
+	@Override
+	public Stream<Employee> streamAll(Specification<Employee> specification, Sort sort) {
+		return streamAll(specification, sort, null);
+	}
+
+	@Override
+	public Stream<Employee> streamAll(Specification<Employee> specification, Sort sort, Set<String> fields) {
+
+		if (fields == null) {
+			return createQuery(specification, sort).setHint(QueryHints.HINT_FETCH_SIZE, fetchSize).getResultStream();
+		}
+
+		return createTupleQuery(specification, sort, fields).setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+				.getResultStream().map(tuple -> toEmployee(tuple, fields));
+	}
+
+	@Override
+	@Transactional
+	public void insert(Employee employee) {
+		entityManager.persist(employee);
+		entityManager.flush();
+	}
+
+	@Override
+	@Transactional
+	public void insertAll(List<Employee> employeeList) {
+		employeeList.forEach(entityManager::persist);
+		entityManager.flush();
+	}
+
+	private static <T extends Query> T limit(T query, int limit) {
+		if (limit < Integer.MAX_VALUE) {
+			query.setMaxResults(limit);
+		}
+		return query;
+	}
+
+	private TypedQuery<Employee> createQuery(Specification<Employee> specification, Sort sort) {
+
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Employee> query = cb.createQuery(Employee.class);
+		Root<Employee> root = query.from(Employee.class);
+
+		query.select(root).orderBy(QueryUtils.toOrders(sort, root, cb));
+		where(query, specification.toPredicate(root, query, cb));
+
+		// search results are never written back, read-only entities keep no
+		// loaded state for dirty checking
+		return entityManager.createQuery(query).setHint(QueryHints.HINT_READONLY, true);
+	}
+
+	private TypedQuery<Tuple> createTupleQuery(Specification<Employee> specification, Sort sort, Set<String> fields) {
+
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> query = cb.createTupleQuery();
+		Root<Employee> root = query.from(Employee.class);
+
+		query.multiselect(fields.stream().map(field -> root.get(field).alias(field)).collect(Collectors.toList()))
+				.orderBy(QueryUtils.toOrders(sort, root, cb));
+		where(query, specification.toPredicate(root, query, cb));
+
+		return entityManager.createQuery(query);
+	}
+
+	private static void where(AbstractQuery<?> query, Predicate predicate) {
+		if (predicate != null) {
+			query.where(predicate);
+		}
+	}
+
+	private static Employee toEmployee(Tuple tuple, Set<String> fields) {
+		Employee employee = new Employee();
+		for (String field : fields) {
+			Object value = tuple.get(field);
+			switch (field) {
+			case "id":
+				employee.setId((String) value);
+				break;
+			case "login":
+				employee.setLogin((String) value);
+				break;
+			case "name":
+				employee.setName((String) value);
+				break;
+			case "salary":
+				employee.setSalary((Double) value);
+				break;
+			case "startDate":
+				employee.setstartDate((Date) value);
+				break;
+			default:
+				throw new IllegalArgumentException(field);
+			}
+		}
+		return employee;
+	}
+}
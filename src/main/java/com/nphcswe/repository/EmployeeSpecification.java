@@ -0,0 +1,57 @@
+package com.nphcswe.repository;
+
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.metamodel.SingularAttribute;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.nphcswe.helper.TextMatch;
+import com.nphcswe.model.Employee;
+import com.nphcswe.model.Employee_;
+
+// search filters evaluated by the database instead of on the loaded table
+public class EmployeeSpecification {
+
+	private EmployeeSpecification() {
+	}
+
+	// exclusive range, minSalary < salary < maxSalary
+	public static Specification<Employee> salaryBetween(double minSalary, double maxSalary) {
+		return (root, query, cb) -> cb.and(cb.greaterThan(root.get(Employee_.salary), minSalary),
+				cb.lessThan(root.get(Employee_.salary), maxSalary));
+	}
+
+	// keyset seek on the id sort order
+	public static Specification<Employee> idAfter(String id) {
+		return (root, query, cb) -> cb.greaterThan(root.get(Employee_.id), id);
+	}
+
+	// keyset seek on the descending id sort order
+	public static Specification<Employee> idBefore(String id) {
+		return (root, query, cb) -> cb.lessThan(root.get(Employee_.id), id);
+	}
+
+	// keyset seek on a sort column, the id breaks ties and is sorted in the same
+	// direction so both can be read from one index
+	public static <T extends Comparable<? super T>> Specification<Employee> seekAfter(
+			SingularAttribute<Employee, T> column, T value, String id, boolean descending) {
+		return (root, query, cb) -> {
+			Path<T> path = root.get(column);
+			Predicate columnPast = descending ? cb.lessThan(path, value) : cb.greaterThan(path, value);
+			Predicate idPast = descending ? cb.lessThan(root.get(Employee_.id), id)
+					: cb.greaterThan(root.get(Employee_.id), id);
+			return cb.or(columnPast, cb.and(cb.equal(path, value), idPast));
+		};
+	}
+
+	public static Specification<Employee> nameMatches(TextMatch textMatch) {
+		return (root, query, cb) -> cb.like(cb.lower(root.get(Employee_.name)), textMatch.toLikePattern(),
+				textMatch.getLikeEscape());
+	}
+
+	public static Specification<Employee> loginMatches(TextMatch textMatch) {
+		return (root, query, cb) -> cb.like(cb.lower(root.get(Employee_.login)), textMatch.toLikePattern(),
+				textMatch.getLikeEscape());
+	}
+}
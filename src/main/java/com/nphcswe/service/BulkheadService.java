@@ -0,0 +1,56 @@
+package com.nphcswe.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.nphcswe.helper.Bulkhead;
+
+/**
+ * Uploads and searches run on their own bounded pools instead of the servlet
+ * container threads, so a burst of uploads cannot hold every worker while
+ * single employee reads and writes wait. A saturated pool answers 503.
+ */
+@Service
+public class BulkheadService {
+
+	private final Bulkhead uploadBulkhead;
+
+	private final Bulkhead searchBulkhead;
+
+	public BulkheadService(@Value("${employee.bulkhead.upload.pool-size:2}") int uploadPoolSize,
+			@Value("${employee.bulkhead.upload.queue-capacity:2}") int uploadQueueCapacity,
+			@Value("${employee.bulkhead.search.pool-size:8}") int searchPoolSize,
+			@Value("${employee.bulkhead.search.queue-capacity:64}") int searchQueueCapacity,
+			@Value("${employee.bulkhead.retry-after:PT5S}") Duration retryAfter) {
+		this.uploadBulkhead = new Bulkhead("upload", uploadPoolSize, uploadQueueCapacity, retryAfter);
+		this.searchBulkhead = new Bulkhead("search", searchPoolSize, searchQueueCapacity, retryAfter);
+	}
+
+	public <T> CompletableFuture<T> upload(Supplier<T> task) {
+		return uploadBulkhead.submit(task);
+	}
+
+	public <T> CompletableFuture<T> search(Supplier<T> task) {
+		return searchBulkhead.submit(task);
+	}
+
+	public Bulkhead getUploadBulkhead() {
+		return uploadBulkhead;
+	}
+
+	public Bulkhead getSearchBulkhead() {
+		return searchBulkhead;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		uploadBulkhead.shutdown();
+		searchBulkhead.shutdown();
+	}
+}
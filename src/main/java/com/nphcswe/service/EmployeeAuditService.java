@@ -0,0 +1,157 @@
+package com.nphcswe.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nphcswe.model.EmployeeAudit;
+import com.nphcswe.model.EmployeeChangeEvent;
+import com.nphcswe.repository.EmployeeAuditRepository;
+
+/**
+ * Audit trail of committed employee changes. The before and after images travel
+ * on the change event and are queued after the commit, a background writer
+ * stores them in large batches so writes pay no extra statement. Entries still
+ * queued when the process dies are lost, a graceful shutdown writes them out.
+ * Uploads store their entries chunk by chunk in their own transaction instead,
+ * with the chunk's rows.
+ */
+@Service
+public class EmployeeAuditService {
+	private static final Logger logger = LogManager.getLogger();
+
+	// what happens to an entry when the queue is full
+	public enum Overflow {
+		// the committing thread waits for the writer, nothing is lost
+		BLOCK,
+		// the entry is discarded and counted, writes never wait
+		DROP
+	}
+
+	private final BlockingQueue<EmployeeAudit> queue;
+
+	private final Overflow overflow;
+
+	private final int batchSize;
+
+	private final ScheduledThreadPoolExecutor writer;
+
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+	private final LongAdder dropped = new LongAdder();
+
+	@Autowired
+	private EmployeeAuditRepository employeeAuditRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	public EmployeeAuditService(@Value("${employee.audit.queue-capacity:100000}") int queueCapacity,
+			@Value("${employee.audit.overflow:BLOCK}") Overflow overflow,
+			@Value("${employee.audit.batch-size:500}") int batchSize,
+			@Value("${employee.audit.flush-interval:PT1S}") Duration flushInterval) {
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.overflow = overflow;
+		this.batchSize = batchSize;
+		this.writer = new ScheduledThreadPoolExecutor(1, runnable -> new Thread(runnable, "employee-audit-writer"));
+		this.writer.scheduleWithFixedDelay(this::writeQueued, flushInterval.toMillis(), flushInterval.toMillis(),
+				TimeUnit.MILLISECONDS);
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onEmployeeChange(EmployeeChangeEvent event) {
+		for (EmployeeAudit audit : event.getAudit()) {
+			enqueue(audit);
+		}
+
+		// a full batch is written without waiting for the next interval
+		if (queue.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+			writer.execute(() -> {
+				flushScheduled.set(false);
+				writeQueued();
+			});
+		}
+	}
+
+	private void enqueue(EmployeeAudit audit) {
+		if (overflow == Overflow.DROP) {
+			if (!queue.offer(audit)) {
+				dropped.increment();
+				logger.warn("audit queue full, change of {} dropped", audit.getEmployeeId());
+			}
+			return;
+		}
+
+		try {
+			queue.put(audit);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			dropped.increment();
+			logger.warn("interrupted while queueing audit of {}", audit.getEmployeeId());
+		}
+	}
+
+	// entries of a write too large to keep in memory until it commits, inserted
+	// with the write's own transaction and committed or rolled back with it.
+	// They go out in the JDBC batches of the write's next flush, the queue is
+	// left to the background writer
+	public void saveWithTransaction(List<EmployeeAudit> audit) {
+		employeeAuditRepository.saveAll(audit);
+	}
+
+	// committed changes of the employee, oldest first. Queued entries are written
+	// first so a change is visible once its write has returned
+	public List<EmployeeAudit> getHistory(String employeeId) {
+		writeQueued();
+		return employeeAuditRepository.findByEmployeeIdOrderByChangedAtAscIdAsc(employeeId);
+	}
+
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	// one writer at a time keeps the sequence ids of queued entries in commit
+	// order
+	public synchronized void writeQueued() {
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		List<EmployeeAudit> batch = new ArrayList<>(batchSize);
+
+		while (queue.drainTo(batch, batchSize) > 0) {
+			try {
+				transactionTemplate.executeWithoutResult(status -> employeeAuditRepository.saveAll(batch));
+			} catch (RuntimeException ex) {
+				dropped.add(batch.size());
+				logger.error("unable to write {} audit entries", batch.size(), ex);
+			}
+			batch.clear();
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		writer.shutdown();
+		try {
+			writer.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		writeQueued();
+	}
+}
@@ -0,0 +1,145 @@
+package com.nphcswe.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.nphcswe.model.Employee;
+import com.nphcswe.model.EmployeeChangeEvent;
+
+/**
+ * Bounded LRU cache of employees by id with a time to live. Entries are
+ * dropped once a change commits, a load that started before an invalidation is
+ * not cached so a slow reader cannot put back the old row.
+ */
+@Component
+public class EmployeeCache {
+	private static final Logger logger = LogManager.getLogger();
+
+	private final int maxSize;
+
+	private final Duration ttl;
+
+	private final Map<String, Entry> entries;
+
+	private final AtomicLong generation = new AtomicLong();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	public EmployeeCache(@Value("${employee.cache.max-size:10000}") int maxSize,
+			@Value("${employee.cache.ttl:PT10M}") Duration ttl) {
+		this.maxSize = maxSize;
+		this.ttl = ttl;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > EmployeeCache.this.maxSize;
+			}
+		};
+	}
+
+	public Optional<Employee> get(String id) {
+		long now = System.nanoTime();
+
+		synchronized (entries) {
+			Entry entry = entries.get(id);
+			if (entry != null && entry.expiresAt - now > 0) {
+				hits.increment();
+				return Optional.of(entry.employee);
+			}
+
+			if (entry != null) {
+				entries.remove(id);
+			}
+		}
+
+		misses.increment();
+		return Optional.empty();
+	}
+
+	// taken before loading, put only caches when nothing was invalidated since
+	public long generation() {
+		return generation.get();
+	}
+
+	// the cached copy is detached from any persistence context
+	public void put(Employee employee, long loadGeneration) {
+		if (maxSize <= 0) {
+			return;
+		}
+
+		Employee copy = new Employee();
+		copy.setId(employee.getId());
+		copy.employeeUpdate(employee);
+
+		synchronized (entries) {
+			if (loadGeneration == generation.get()) {
+				entries.put(copy.getId(), new Entry(copy, System.nanoTime() + ttl.toNanos()));
+			}
+		}
+	}
+
+	public void invalidate(String id) {
+		synchronized (entries) {
+			generation.incrementAndGet();
+			entries.remove(id);
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (entries) {
+			generation.incrementAndGet();
+			entries.clear();
+		}
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onEmployeeChange(EmployeeChangeEvent event) {
+		if (event.getEmployeeId() != null) {
+			invalidate(event.getEmployeeId());
+		} else {
+			invalidateAll();
+		}
+		logger.info("employee cache invalidated by {}, hits: {}, misses: {}", event, getHits(), getMisses());
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	private static class Entry {
+
+		private final Employee employee;
+
+		private final long expiresAt;
+
+		private Entry(Employee employee, long expiresAt) {
+			this.employee = employee;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
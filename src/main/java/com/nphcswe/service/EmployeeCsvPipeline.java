@@ -0,0 +1,188 @@
+package com.nphcswe.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.nphcswe.helper.CsvReader;
+import com.nphcswe.helper.CsvRecordSplitter;
+import com.nphcswe.helper.ResponseMessage;
+import com.nphcswe.helper.exception.BadInputException;
+import com.nphcswe.model.Employee;
+
+/**
+ * Parses and validates uploaded CSV rows in chunks. With a parallelism above one
+ * the input is split on record boundaries and chunks are parsed and validated
+ * on a fork-join pool, chunks are still handed to the consumer in file order.
+ */
+@Component
+public class EmployeeCsvPipeline {
+	private static final Logger logger = LogManager.getLogger();
+
+	private final int chunkSize;
+
+	private final int parallelism;
+
+	private final ForkJoinPool parsePool;
+
+	public EmployeeCsvPipeline(@Value("${employee.upload.chunk-size:1000}") int chunkSize,
+			@Value("${employee.upload.parallelism:0}") int parallelism) {
+		this.chunkSize = chunkSize;
+		this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+		this.parsePool = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+		logger.info("csv pipeline chunk size: {}, parallelism: {}", this.chunkSize, this.parallelism);
+	}
+
+	// validation of a single row, returns null when the row is valid
+	@FunctionalInterface
+	public interface RowValidator {
+		RowError validate(int index, Employee employee);
+	}
+
+	public void read(Reader reader, RowValidator rowValidator, Consumer<ValidatedChunk> chunkConsumer) {
+		if (parsePool == null) {
+			readSequential(reader, rowValidator, chunkConsumer);
+		} else {
+			readParallel(reader, rowValidator, chunkConsumer);
+		}
+	}
+
+	private void readSequential(Reader reader, RowValidator rowValidator, Consumer<ValidatedChunk> chunkConsumer) {
+
+		try (MappingIterator<Employee> iterator = CsvReader.toIterator(Employee.class, reader)) {
+
+			List<Employee> employeeChunk = CsvReader.readChunk(iterator, chunkSize);
+			while (!employeeChunk.isEmpty()) {
+				chunkConsumer.accept(validateChunk(employeeChunk, rowValidator));
+				employeeChunk = CsvReader.readChunk(iterator, chunkSize);
+			}
+		} catch (IOException ex) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_FILE_READING);
+		}
+	}
+
+	// at most two chunks per worker are in flight, a slow consumer holds back the
+	// reader instead of buffering the file
+	private void readParallel(Reader reader, RowValidator rowValidator, Consumer<ValidatedChunk> chunkConsumer) {
+
+		CsvRecordSplitter splitter = new CsvRecordSplitter(reader);
+		Deque<Future<ValidatedChunk>> inFlight = new ArrayDeque<>();
+
+		try {
+			// header line
+			splitter.nextRecords(1);
+
+			String records = splitter.nextRecords(chunkSize);
+			while (records != null) {
+				String chunkRecords = records;
+				inFlight.add(CompletableFuture.supplyAsync(
+						() -> validateChunk(CsvReader.parseRecords(Employee.class, chunkRecords), rowValidator),
+						parsePool));
+
+				if (inFlight.size() >= parallelism * 2) {
+					chunkConsumer.accept(await(inFlight.poll()));
+				}
+				records = splitter.nextRecords(chunkSize);
+			}
+
+			while (!inFlight.isEmpty()) {
+				chunkConsumer.accept(await(inFlight.poll()));
+			}
+		} catch (IOException ex) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_FILE_READING);
+		} finally {
+			inFlight.forEach(future -> future.cancel(true));
+		}
+	}
+
+	private ValidatedChunk await(Future<ValidatedChunk> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new BadInputException(ResponseMessage.MSG_ERR_FILE_READING, ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw new BadInputException(ResponseMessage.MSG_ERR_FILE_READING, ex.getCause());
+		}
+	}
+
+	public static ValidatedChunk validateChunk(List<Employee> employeeChunk, RowValidator rowValidator) {
+
+		List<RowError> rowErrors = new ArrayList<>();
+		for (int i = 0; i < employeeChunk.size(); i++) {
+			RowError rowError = rowValidator.validate(i, employeeChunk.get(i));
+			if (rowError != null) {
+				rowErrors.add(rowError);
+			}
+		}
+		return new ValidatedChunk(employeeChunk, rowErrors);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (parsePool != null) {
+			parsePool.shutdownNow();
+		}
+	}
+
+	public static class ValidatedChunk {
+
+		private final List<Employee> employees;
+
+		private final List<RowError> rowErrors;
+
+		public ValidatedChunk(List<Employee> employees, List<RowError> rowErrors) {
+			this.employees = employees;
+			this.rowErrors = rowErrors;
+		}
+
+		public List<Employee> getEmployees() {
+			return employees;
+		}
+
+		public List<RowError> getRowErrors() {
+			return rowErrors;
+		}
+	}
+
+	// row error relative to its chunk, the CSV row number is only known once
+	// the chunks before it have been counted
+	public static class RowError {
+
+		private final int index;
+
+		private final String messageFormat;
+
+		private final String fields;
+
+		public RowError(int index, String messageFormat, String fields) {
+			this.index = index;
+			this.messageFormat = messageFormat;
+			this.fields = fields;
+		}
+
+		// rowOffset + index + 2 to show row number in CSV file
+		public String toMessage(int rowOffset) {
+			return String.format(messageFormat, rowOffset + index + 2, fields);
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package com.nphcswe.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.nphcswe.helper.ResponseMessage;
+import com.nphcswe.helper.exception.ServiceBusyException;
+
+/**
+ * Orders concurrent writes of the same employee. A write locks the stripes of
+ * its lower-cased ids and logins, so writes of different employees run in
+ * parallel and overlapping ones take turns. Uploads lock the stripes of each
+ * chunk as it is saved, one upload at a time. Locks are held until the
+ * transaction completes, a write waiting longer than the timeout gives up with
+ * a 503.
+ */
+@Service
+public class EmployeeLockService {
+
+	private static final Duration OUT_OF_ORDER_TIMEOUT = Duration.ofMillis(200);
+
+	// writes hold the shared side, the statistics recompute the exclusive side
+	// while it scans the table
+	private final ReentrantReadWriteLock writeLock = new ReentrantReadWriteLock(true);
+
+	// uploads run one at a time, two uploads locking chunk after chunk could
+	// otherwise wait on each other
+	private final ReentrantLock uploadLock = new ReentrantLock(true);
+
+	private final ReentrantLock[] stripes;
+
+	private final Duration timeout;
+
+	private final Duration outOfOrderTimeout;
+
+	private final Duration retryAfter;
+
+	public EmployeeLockService(@Value("${employee.lock.stripes:1024}") int stripeCount,
+			@Value("${employee.lock.timeout:PT30S}") Duration timeout,
+			@Value("${employee.bulkhead.retry-after:PT5S}") Duration retryAfter) {
+
+		// a power of two, the stripe is picked with a mask
+		int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+		this.stripes = new ReentrantLock[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = new ReentrantLock();
+		}
+		this.timeout = timeout;
+		this.outOfOrderTimeout = timeout.compareTo(OUT_OF_ORDER_TIMEOUT) < 0 ? timeout : OUT_OF_ORDER_TIMEOUT;
+		this.retryAfter = retryAfter;
+	}
+
+	// ids and logins written by the current transaction, null keys and stripes
+	// it already holds are skipped. Stripes are locked in stripe order, so
+	// writes waiting on each other never wait in a circle. A stripe below one
+	// already held is out of order, a short wait for it lets the write holding
+	// it finish and ends a circle quickly
+	public void lockKeys(Collection<String> keys) {
+
+		HeldLocks heldLocks = heldLocks();
+
+		int[] stripeIndexes = keys.stream().filter(Objects::nonNull).mapToInt(this::stripeIndex)
+				.filter(stripeIndex -> !heldLocks.stripes.get(stripeIndex)).distinct().sorted().toArray();
+
+		for (int stripeIndex : stripeIndexes) {
+			if (heldLocks.upload) {
+				acquire(stripes[stripeIndex], heldLocks, timeout.multipliedBy(2));
+			} else if (stripeIndex < heldLocks.stripes.length()) {
+				acquire(stripes[stripeIndex], heldLocks, outOfOrderTimeout);
+			} else {
+				acquire(stripes[stripeIndex], heldLocks, timeout);
+			}
+			heldLocks.stripes.set(stripeIndex);
+		}
+	}
+
+	// an upload locks the keys of each chunk as it is saved, out of stripe
+	// order from one chunk to the next. It waits twice as long for a stripe as
+	// other writes, a write waiting on the upload while holding what the upload
+	// waits for gives up first. Uploads only run on the bounded upload pools, an
+	// upload waits for the one before it as long as that takes, the same as it
+	// would in the queue of a single upload thread. No write lock is held while
+	// it waits
+	public void lockUpload() {
+
+		try {
+			uploadLock.lockInterruptibly();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new ServiceBusyException(ResponseMessage.MSG_ERR_WRITE_CONFLICT, retryAfter);
+		}
+
+		HeldLocks heldLocks;
+		try {
+			heldLocks = heldLocks();
+		} catch (RuntimeException ex) {
+			uploadLock.unlock();
+			throw ex;
+		}
+		heldLocks.locks.add(uploadLock);
+		heldLocks.upload = true;
+	}
+
+	// every key once no write is in flight. The lock is polled instead of
+	// queued for, so a caller waiting for it never holds back writes. False when
+	// writes kept it busy for longer than the timeout
+	public boolean tryLockAllKeys() {
+
+		Lock exclusiveLock = writeLock.writeLock();
+		long deadline = System.nanoTime() + timeout.toNanos();
+		while (!exclusiveLock.tryLock()) {
+			if (System.nanoTime() - deadline > 0) {
+				return false;
+			}
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		HeldLocks heldLocks = new HeldLocks();
+		heldLocks.locks.add(exclusiveLock);
+		releaseAfterTransaction(heldLocks);
+		return true;
+	}
+
+	int stripeIndex(String key) {
+		int hash = key.toLowerCase(Locale.ROOT).hashCode();
+		return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+	}
+
+	public int getStripeCount() {
+		return stripes.length;
+	}
+
+	// the locks of the current transaction, the shared side of the write lock is
+	// taken by the first call
+	private HeldLocks heldLocks() {
+
+		HeldLocks heldLocks = (HeldLocks) TransactionSynchronizationManager.getResource(this);
+		if (heldLocks != null) {
+			return heldLocks;
+		}
+
+		heldLocks = new HeldLocks();
+		acquire(writeLock.readLock(), heldLocks, timeout);
+		releaseAfterTransaction(heldLocks);
+		TransactionSynchronizationManager.bindResource(this, heldLocks);
+		return heldLocks;
+	}
+
+	// the locks already held are released with the transaction
+	private void acquire(Lock lock, HeldLocks heldLocks, Duration lockTimeout) {
+		boolean acquired;
+		try {
+			acquired = lock.tryLock(lockTimeout.toMillis(), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			acquired = false;
+		}
+
+		if (!acquired) {
+			throw new ServiceBusyException(ResponseMessage.MSG_ERR_WRITE_CONFLICT, retryAfter);
+		}
+		heldLocks.locks.add(lock);
+	}
+
+	// released on commit and on rollback, after the changes are visible
+	private void releaseAfterTransaction(HeldLocks heldLocks) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			heldLocks.release();
+			throw new IllegalStateException("employee locks are only held within a transaction");
+		}
+
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+			private boolean releaseRegistered;
+
+			// the change listeners also run after completion and were registered
+			// after the locks were taken, the release goes last so they see the
+			// changes of one employee in lock order
+			@Override
+			public void beforeCompletion() {
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+					@Override
+					public void afterCompletion(int status) {
+						release(heldLocks);
+					}
+				});
+				releaseRegistered = true;
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				if (!releaseRegistered) {
+					release(heldLocks);
+				}
+			}
+		});
+	}
+
+	private void release(HeldLocks heldLocks) {
+		if (TransactionSynchronizationManager.getResource(this) == heldLocks) {
+			TransactionSynchronizationManager.unbindResource(this);
+		}
+		heldLocks.release();
+	}
+
+	private static class HeldLocks {
+
+		private final List<Lock> locks = new ArrayList<>();
+
+		private final BitSet stripes = new BitSet();
+
+		private boolean upload;
+
+		private void release() {
+			for (int i = locks.size() - 1; i >= 0; i--) {
+				locks.get(i).unlock();
+			}
+			locks.clear();
+			stripes.clear();
+		}
+	}
+}
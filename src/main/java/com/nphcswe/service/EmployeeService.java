@@ -1,11 +1,17 @@
 package com.nphcswe.service;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 import org.springframework.web.multipart.MultipartFile;
 
+import com.nphcswe.model.BatchResult;
 import com.nphcswe.model.Employee;
+import com.nphcswe.model.SearchResult;
+import com.nphcswe.model.UploadResult;
 
 public interface EmployeeService {
 	public Employee getEmployee(String id);
@@ -16,7 +22,19 @@ public interface EmployeeService {
 
 	public void deleteEmployee(String id);
 
-	public List<Employee> searchEmployeeList(Map<String, String> searchCriteria);
+	public BatchResult saveEmployeeBatch(List<Employee> employeeList);
 
-	public Boolean uploadAndSaveEmployee(MultipartFile file);
+	public BatchResult updateEmployeeBatch(List<Employee> employeeList);
+
+	public BatchResult deleteEmployeeBatch(List<String> idList);
+
+	public SearchResult searchEmployeeList(Map<String, String> searchCriteria);
+
+	public void validateSearchCriteria(Map<String, String> searchCriteria);
+
+	public void streamEmployeeList(Map<String, String> searchCriteria, Consumer<Employee> employeeConsumer);
+
+	public UploadResult uploadAndSaveEmployee(MultipartFile file);
+
+	public UploadResult uploadAndSaveEmployee(InputStream csvStream, LongConsumer progressListener);
 }
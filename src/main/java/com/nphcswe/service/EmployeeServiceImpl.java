@@ -1,287 +1,1013 @@
 package com.nphcswe.service;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.StringJoiner;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
-import com.nphcswe.helper.CsvReader;
+import com.nphcswe.helper.CsvCommentFilterReader;
+import com.nphcswe.helper.GzipUtil;
 import com.nphcswe.helper.ResponseMessage;
+import com.nphcswe.helper.TextMatch;
 import com.nphcswe.helper.exception.BadInputException;
+import com.nphcswe.model.BatchResult;
 import com.nphcswe.model.Employee;
+import com.nphcswe.model.EmployeeAudit;
+import com.nphcswe.model.EmployeeChangeEvent;
+import com.nphcswe.model.EmployeeImage;
+import com.nphcswe.model.EmployeeLogin;
+import com.nphcswe.model.Employee_;
+import com.nphcswe.model.SalaryStatistics;
+import com.nphcswe.model.SearchResult;
+import com.nphcswe.model.UploadResult;
 import com.nphcswe.repository.EmployeeRepository;
+import com.nphcswe.repository.EmployeeSpecification;
+import com.nphcswe.service.EmployeeCsvPipeline.RowError;
+import com.nphcswe.service.EmployeeCsvPipeline.ValidatedChunk;
 
 @Service
 public class EmployeeServiceImpl implements EmployeeService {
 	private static final Logger logger = LogManager.getLogger();
 
-	private static long FILE_SIZE_LIMIT_10MB = 10485760;
+	private static final String CURSOR_SEPARATOR = "\u0000";
+
+	// JSON properties of an employee which can be requested with fields= and
+	// sort=
+	private static final List<String> EMPLOYEE_FIELDS = List.of("id", "login", "name", "salary", "startDate");
+
+	@Value("${employee.upload.max-file-size:10MB}")
+	private DataSize maxFileSize;
+
+	@Value("${employee.batch.max-size:1000}")
+	private int batchMaxSize;
+
+	@Value("${employee.search.max-page-size:10000}")
+	private int searchMaxPageSize;
 
 	@Autowired
 	private EmployeeRepository employeeRepository;
 
-	// create employee
+	@Autowired
+	private EmployeeCsvPipeline employeeCsvPipeline;
+
+	@Autowired
+	private EmployeeSnapshotService employeeSnapshotService;
+
+	@Autowired
+	private EmployeeCache employeeCache;
+
+	@Autowired
+	private EmployeeLockService employeeLockService;
+
+	@Autowired
+	private EmployeeAuditService employeeAuditService;
+
+	@Autowired
+	private ApplicationEventPublisher applicationEventPublisher;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	// create employee, a single INSERT checked by the table constraints
 	@Override
+	@Transactional
 	public void saveEmployee(Employee employee) {
 
-		validateCreateEmployee(employee);
-		createOrUpdateEmployee(employee);
+		validateEmployeeFields(employee);
+		employeeLockService.lockKeys(List.of(employee.getId(), employee.getLogin()));
+
+		try {
+			employeeRepository.insert(employee);
+		} catch (DataIntegrityViolationException ex) {
+			throw new BadInputException(isLoginViolation(ex) ? ResponseMessage.MSG_ERR_NOT_UNIQUE_EMPLOYEE_LOGIN
+					: ResponseMessage.MSG_ERR_EMPLOYEE_EXIST);
+		}
+
+		SalaryStatistics salaryDelta = new SalaryStatistics();
+		salaryDelta.add(employee);
+		publishChange(EmployeeChangeEvent.Type.CREATED, employee.getId(), salaryDelta, null,
+				EmployeeImage.of(employee));
 
 	}
 
 	@Override
 	public Employee getEmployee(String id) {
+		Optional<Employee> cached = employeeCache.get(id);
+		if (cached.isPresent()) {
+			return cached.get();
+		}
+
+		long loadGeneration = employeeCache.generation();
 		Optional<Employee> employee = employeeRepository.findById(id);
 		if (!employee.isPresent()) {
 			throw new BadInputException(ResponseMessage.MSG_ERR_NO_SUCH_EMPLOYEE);
 		}
 		logger.info("employee Unit test : {}", employee.get());
+		employeeCache.put(employee.get(), loadGeneration);
 		return employee.get();
 	}
 
+	// the locked row is read for the salary delta and written back with a single
+	// UPDATE, a login taken by another employee fails on the unique constraint
 	@Override
+	@Transactional
 	public void updateEmployee(Employee employee) {
-		validateUpdateEmployee(employee);
-		createOrUpdateEmployee(employee);
+
+		validateEmployeeFields(employee);
+		employeeLockService.lockKeys(List.of(employee.getId(), employee.getLogin()));
+
+		Optional<Employee> employeeDb = employeeRepository.findForUpdateById(employee.getId());
+		if (!employeeDb.isPresent()) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_NO_SUCH_EMPLOYEE);
+		}
+		lockChangedLogins(Collections.singletonList(employeeDb.get()));
+
+		SalaryStatistics salaryDelta = new SalaryStatistics();
+		salaryDelta.remove(employeeDb.get());
+		EmployeeImage before = EmployeeImage.of(employeeDb.get());
+
+		try {
+			employeeDb.get().employeeUpdate(employee);
+			employeeRepository.flush();
+		} catch (DataIntegrityViolationException ex) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_NOT_UNIQUE_EMPLOYEE_LOGIN);
+		}
+
+		salaryDelta.add(employeeDb.get());
+		publishChange(EmployeeChangeEvent.Type.UPDATED, employee.getId(), salaryDelta, before,
+				EmployeeImage.of(employeeDb.get()));
 
 	}
 
 	@Override
+	@Transactional
 	public void deleteEmployee(String id) {
 		Employee employee = new Employee();
 		employee.setId(id);
+		employeeLockService.lockKeys(Collections.singletonList(id));
 		validateNonExistingEmployeeID(employee);
+
+		SalaryStatistics salaryDelta = new SalaryStatistics();
+		Optional<Employee> employeeDb = employeeRepository.findById(id);
+		employeeDb.ifPresent(salaryDelta::remove);
+		employeeDb.ifPresent(employeeRow -> lockChangedLogins(Collections.singletonList(employeeRow)));
+
 		employeeRepository.deleteById(id);
+		publishChange(EmployeeChangeEvent.Type.DELETED, id, salaryDelta,
+				employeeDb.map(EmployeeImage::of).orElse(null), null);
 
 	}
 
+	// valid items are inserted in one transaction and flushed as JDBC batches,
+	// duplicates are found with one query for the ids and one for the logins
 	@Override
-	public List<Employee> searchEmployeeList(Map<String, String> searchCriteria) {
-		double minSalary = searchCriteria.get("minSalary") != null
-				? Double.parseDouble(searchCriteria.get("minSalary").toString())
-				: 0;
-		double maxSalary = searchCriteria.get("maxSalary") != null
-				? Double.parseDouble(searchCriteria.get("maxSalary").toString())
-				: 4000;
-		logger.info("min salary: {}", minSalary);
-		logger.info("max salary: {}", maxSalary);
-		List<Employee> employeeList = employeeRepository.findAll(Sort.by(Sort.Direction.ASC, "id"));
-		List<Employee> result = new ArrayList();
-		for (int i = 0; i < employeeList.size(); i++) {
-			if (employeeList.get(i).getSalary() > minSalary && employeeList.get(i).getSalary() < maxSalary) {
-				result.add(employeeList.get(i));
+	@Transactional
+	public BatchResult saveEmployeeBatch(List<Employee> employeeList) {
 
+		BatchResult batchResult = new BatchResult(employeeList.size());
+		Map<Integer, Employee> validEmployees = validateBatch(employeeList, batchResult);
+		if (validEmployees.isEmpty()) {
+			return batchResult;
+		}
+		employeeLockService.lockKeys(lockKeys(validEmployees.values()));
+
+		Set<String> existingIds = new HashSet<>(employeeRepository.findExistingIds(
+				validEmployees.values().stream().map(Employee::getId).collect(Collectors.toList())));
+		Set<String> existingLogins = employeeRepository.findByLoginIn(
+				validEmployees.values().stream().map(Employee::getLogin).collect(Collectors.toList())).stream()
+				.map(EmployeeLogin::getLogin).collect(Collectors.toSet());
+
+		validEmployees.entrySet().removeIf(item -> {
+			if (existingIds.contains(item.getValue().getId())) {
+				batchResult.failure(item.getKey(), item.getValue().getId(), ResponseMessage.MSG_ERR_EMPLOYEE_EXIST);
+				return true;
 			}
+			if (existingLogins.contains(item.getValue().getLogin())) {
+				batchResult.failure(item.getKey(), item.getValue().getId(),
+						ResponseMessage.MSG_ERR_NOT_UNIQUE_EMPLOYEE_LOGIN);
+				return true;
+			}
+			return false;
+		});
+
+		try {
+			employeeRepository.insertAll(new ArrayList<>(validEmployees.values()));
+		} catch (DataIntegrityViolationException ex) {
+			throw new BadInputException(isLoginViolation(ex) ? ResponseMessage.MSG_ERR_NOT_UNIQUE_EMPLOYEE_LOGIN
+					: ResponseMessage.MSG_ERR_EMPLOYEE_EXIST);
 		}
-		return result;
 
+		validEmployees.forEach((index, employee) -> {
+			batchResult.success(index, employee.getId(), HttpStatus.CREATED, ResponseMessage.MSG_SUC_CREATED);
+
+			SalaryStatistics salaryDelta = new SalaryStatistics();
+			salaryDelta.add(employee);
+			publishChange(EmployeeChangeEvent.Type.CREATED, employee.getId(), salaryDelta, null,
+					EmployeeImage.of(employee));
+		});
+		return batchResult;
 	}
 
+	// the rows are read and locked with one query and written back as JDBC
+	// batches
 	@Override
-	public Boolean uploadAndSaveEmployee(MultipartFile file) {
-		boolean uploadSuccess = false;
-		// validateCsvSize(file);
+	@Transactional
+	public BatchResult updateEmployeeBatch(List<Employee> employeeList) {
 
-		List<Employee> employeeFile = new ArrayList<>();
+		BatchResult batchResult = new BatchResult(employeeList.size());
+		Map<Integer, Employee> validEmployees = validateBatch(employeeList, batchResult);
+		if (validEmployees.isEmpty()) {
+			return batchResult;
+		}
+		List<String> ids = validEmployees.values().stream().map(Employee::getId).collect(Collectors.toList());
+		employeeLockService.lockKeys(lockKeys(validEmployees.values()));
+
+		Map<String, Employee> employeeDbList = employeeRepository.findForUpdateByIdIn(ids).stream()
+				.collect(Collectors.toMap(Employee::getId, Function.identity()));
+		lockChangedLogins(employeeDbList.values());
+		Map<String, String> loginOwners = employeeRepository
+				.findByLoginIn(validEmployees.values().stream().map(Employee::getLogin).collect(Collectors.toList()))
+				.stream().collect(Collectors.toMap(EmployeeLogin::getLogin, EmployeeLogin::getId));
+
+		Map<Integer, SalaryStatistics> salaryDeltas = new HashMap<>();
+		Map<Integer, EmployeeImage> beforeImages = new HashMap<>();
+		validEmployees.forEach((index, employee) -> {
+			Employee employeeDb = employeeDbList.get(employee.getId());
+			String loginOwner = loginOwners.get(employee.getLogin());
+
+			if (employeeDb == null) {
+				batchResult.failure(index, employee.getId(), ResponseMessage.MSG_ERR_NO_SUCH_EMPLOYEE);
+			} else if (loginOwner != null && !loginOwner.equals(employee.getId())) {
+				batchResult.failure(index, employee.getId(), ResponseMessage.MSG_ERR_NOT_UNIQUE_EMPLOYEE_LOGIN);
+			} else {
+				SalaryStatistics salaryDelta = new SalaryStatistics();
+				salaryDelta.remove(employeeDb);
+				beforeImages.put(index, EmployeeImage.of(employeeDb));
+				employeeDb.employeeUpdate(employee);
+				salaryDelta.add(employeeDb);
+				salaryDeltas.put(index, salaryDelta);
+			}
+		});
 
-		String csvContent = readAndFilterCsvData(file);
+		try {
+			employeeRepository.flush();
+		} catch (DataIntegrityViolationException ex) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_NOT_UNIQUE_EMPLOYEE_LOGIN);
+		}
 
-		logger.info("filtered content: \n{}\n", csvContent);
+		salaryDeltas.forEach((index, salaryDelta) -> {
+			String id = validEmployees.get(index).getId();
+			batchResult.success(index, id, HttpStatus.OK, ResponseMessage.MSG_SUC_UPDATED);
+			publishChange(EmployeeChangeEvent.Type.UPDATED, id, salaryDelta, beforeImages.get(index),
+					EmployeeImage.of(employeeDbList.get(id)));
+		});
+		return batchResult;
+	}
 
-		employeeFile = CsvReader.toList(Employee.class, csvContent.getBytes());
+	// existing rows are read for the salary deltas and removed with a single
+	// DELETE
+	@Override
+	@Transactional
+	public BatchResult deleteEmployeeBatch(List<String> idList) {
+
+		validateBatchSize(idList.size());
+		BatchResult batchResult = new BatchResult(idList.size());
+
+		Map<String, Integer> validIds = new LinkedHashMap<>();
+		for (int i = 0; i < idList.size(); i++) {
+			String id = idList.get(i);
+			if (id == null || id.trim().isEmpty()) {
+				batchResult.failure(i, id, String.format(ResponseMessage.MSG_ERR_MANDATORY_FIELD, "ID"));
+			} else if (validIds.putIfAbsent(id, i) != null) {
+				batchResult.failure(i, id, String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_IDS, id));
+			}
+		}
 
-		validateUserList(employeeFile);
+		if (validIds.isEmpty()) {
+			return batchResult;
+		}
+		employeeLockService.lockKeys(validIds.keySet());
 
-		for (Employee employee : employeeFile) {
+		List<Employee> employeeDbList = employeeRepository.findForUpdateByIdIn(validIds.keySet());
+		Set<String> existingIds = employeeDbList.stream().map(Employee::getId).collect(Collectors.toSet());
+		lockChangedLogins(employeeDbList);
 
-			Optional<Employee> optEmployee = employeeRepository.findById(employee.getId());
-			if (optEmployee.isPresent()) {
-				Employee employeeDb = optEmployee.get();
+		validIds.forEach((id, index) -> {
+			if (!existingIds.contains(id)) {
+				batchResult.failure(index, id, ResponseMessage.MSG_ERR_NO_SUCH_EMPLOYEE);
+			}
+		});
 
-				employeeDb.employeeUpdate(employee);
+		if (!employeeDbList.isEmpty()) {
+			employeeRepository.deleteAllInBatch(employeeDbList);
+		}
 
-				Employee employeeUpdate = employeeRepository.save(employeeDb);
-				if (!employeeUpdate.equals(employee)) {
-					uploadSuccess = true;
-				}
+		employeeDbList.forEach(employee -> {
+			batchResult.success(validIds.get(employee.getId()), employee.getId(), HttpStatus.OK,
+					ResponseMessage.MSG_SUC_DELETED);
+
+			SalaryStatistics salaryDelta = new SalaryStatistics();
+			salaryDelta.remove(employee);
+			publishChange(EmployeeChangeEvent.Type.DELETED, employee.getId(), salaryDelta,
+					EmployeeImage.of(employee), null);
+		});
+		return batchResult;
+	}
+
+	private static List<String> lockKeys(Collection<Employee> employees) {
+		List<String> keys = new ArrayList<>(employees.size() * 2);
+		employees.forEach(employee -> {
+			keys.add(employee.getId());
+			keys.add(employee.getLogin());
+		});
+		return keys;
+	}
+
+	// the login a row stores is given up by its update or delete and only known
+	// once the locked row is read. Unless it is the login written, its stripe
+	// is locked after the others and may be refused when another write keeps it
+	private void lockChangedLogins(Collection<Employee> employeeDbList) {
+		employeeLockService.lockKeys(employeeDbList.stream().map(Employee::getLogin).collect(Collectors.toList()));
+	}
+
+	// delivered to transactional listeners once the write commits, the audit
+	// images go with it
+	private void publishChange(EmployeeChangeEvent.Type type, String id, SalaryStatistics salaryDelta,
+			EmployeeImage before, EmployeeImage after) {
+		applicationEventPublisher.publishEvent(new EmployeeChangeEvent(type, id, salaryDelta,
+				List.of(new EmployeeAudit(type, id, before, after))));
+	}
+
+	// the checks of the single item endpoints which need no database, the valid
+	// items are returned by request index
+	private Map<Integer, Employee> validateBatch(List<Employee> employeeList, BatchResult batchResult) {
+
+		validateBatchSize(employeeList.size());
+
+		Map<Integer, Employee> validEmployees = new LinkedHashMap<>();
+		Set<String> ids = new HashSet<>();
+		Set<String> logins = new HashSet<>();
+
+		for (int i = 0; i < employeeList.size(); i++) {
+			Employee employee = employeeList.get(i);
+			if (employee == null) {
+				batchResult.failure(i, null, ResponseMessage.MSG_ERR_REQUEST_INVALID);
+				continue;
+			}
+
+			try {
+				validateEmployeeFields(employee);
+			} catch (BadInputException ex) {
+				batchResult.failure(i, employee.getId(), ex.getMessage());
+				continue;
+			}
+
+			// exact keys, as the primary key and the login constraint compare them
+			if (!ids.add(employee.getId())) {
+				batchResult.failure(i, employee.getId(),
+						String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_IDS, employee.getId()));
+			} else if (!logins.add(employee.getLogin())) {
+				batchResult.failure(i, employee.getId(),
+						String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_LOGINS, employee.getLogin()));
 			} else {
-				employeeRepository.save(employee);
-				uploadSuccess = true;
+				validEmployees.put(i, employee);
 			}
+		}
+		return validEmployees;
+	}
 
+	private void validateBatchSize(int size) {
+		if (size > batchMaxSize) {
+			throw new BadInputException(String.format(ResponseMessage.MSG_ERR_BATCH_SIZE_LIMIT, batchMaxSize));
 		}
-		return uploadSuccess;
+	}
+
+	// read-only: hibernate skips the flush and keeps no dirty checking snapshot of
+	// the returned rows
+	@Override
+	@Transactional(readOnly = true)
+	public SearchResult searchEmployeeList(Map<String, String> searchCriteria) {
 
+		SearchCriteria criteria = new SearchCriteria(searchCriteria, searchMaxPageSize);
+
+		// one extra row tells whether another page follows
+		int maxRows = criteria.limit != null ? criteria.limit + 1 : Integer.MAX_VALUE;
+
+		// the snapshot only keeps the id order, other orders are sorted and cut
+		// by the database
+		Optional<List<Employee>> snapshotResult = criteria.isIdOrder()
+				? employeeSnapshotService.search(criteria.minSalary, criteria.maxSalary, criteria.name,
+						criteria.login, criteria.afterId, maxRows)
+				: Optional.empty();
+
+		List<Employee> employeeList = snapshotResult.orElseGet(() -> employeeRepository
+				.findAll(toSpecification(criteria), criteria.sort(), criteria.selectedColumns(), maxRows));
+
+		String nextCursor = null;
+		if (criteria.limit != null && employeeList.size() > criteria.limit) {
+			employeeList = employeeList.subList(0, criteria.limit);
+			nextCursor = criteria.nextCursor(employeeList.get(criteria.limit - 1));
+		}
+
+		employeeList.forEach(criteria::clearUnselected);
+		return new SearchResult(employeeList, nextCursor);
 	}
 
-	private String readAndFilterCsvData(MultipartFile file) {
-		try (BufferedReader fileReader = new BufferedReader(new InputStreamReader(file.getInputStream(), "UTF-8"));) {
+	@Override
+	public void validateSearchCriteria(Map<String, String> searchCriteria) {
+		new SearchCriteria(searchCriteria, searchMaxPageSize);
+	}
 
-			return fileReader.lines().filter(line -> !line.startsWith("#"))
-					.collect(Collectors.joining(System.lineSeparator()));
-		} catch (IOException ex) {
-			throw new BadInputException(ResponseMessage.MSG_ERR_FILE_READING);
+	// hands rows to the consumer as they are read, each row is detached once
+	// consumed so the persistence context stays empty
+	@Override
+	@Transactional(readOnly = true)
+	public void streamEmployeeList(Map<String, String> searchCriteria, Consumer<Employee> employeeConsumer) {
+
+		SearchCriteria criteria = new SearchCriteria(searchCriteria, searchMaxPageSize);
+		long limit = criteria.limit != null ? criteria.limit : Long.MAX_VALUE;
+
+		try (Stream<Employee> employeeStream = employeeRepository.streamAll(toSpecification(criteria),
+				criteria.sort(), criteria.selectedColumns())) {
+			employeeStream.limit(limit).forEach(employee -> {
+				if (criteria.fields == null) {
+					employeeConsumer.accept(employee);
+					entityManager.detach(employee);
+				} else {
+					employeeConsumer.accept(criteria.clearUnselected(employee));
+				}
+			});
 		}
 	}
 
-	private void validateCsvSize(MultipartFile file) {
+	private static Specification<Employee> toSpecification(SearchCriteria criteria) {
+
+		Specification<Employee> specification = EmployeeSpecification.salaryBetween(criteria.minSalary,
+				criteria.maxSalary);
+
+		if (criteria.name != null) {
+			specification = specification.and(EmployeeSpecification.nameMatches(criteria.name));
+		}
 
-		if (file.getSize() > FILE_SIZE_LIMIT_10MB) {
-			throw new BadInputException(ResponseMessage.MSG_ERR_FILE_SIZE_LIMIT_10MB);
+		if (criteria.login != null) {
+			specification = specification.and(EmployeeSpecification.loginMatches(criteria.login));
 		}
 
+		if (criteria.seek != null) {
+			specification = specification.and(criteria.seek);
+		}
+		return specification;
 	}
 
-	public void validateUserList(List<Employee> employeeList) {
+	// search parameters of GET /users, parsed and validated once
+	private static class SearchCriteria {
 
-		List<String> errorList = new ArrayList<>();
+		private final double minSalary;
 
-		errorList.addAll(validateDuplicateUserList(employeeList));
+		private final double maxSalary;
 
-		for (int i = 0; i < employeeList.size(); i++) {
-			StringJoiner sj = validateMandatoryField(employeeList.get(i));
-			if (sj.length() > 0) {
+		private final TextMatch name;
+
+		private final TextMatch login;
+
+		// sort property, the id is the tie breaker of every other property
+		private final String sortProperty;
+
+		private final boolean descending;
+
+		// last id of the previous page and the seek past its row, null on the
+		// first page
+		private final String afterId;
+
+		private final Specification<Employee> seek;
 
-				errorList.add(String.format(ResponseMessage.MSG_ERR_MANDATORY_ROW_FIELD, i + 2, sj.toString()));
+		private final Integer limit;
+
+		// requested JSON properties, null for all of them
+		private final Set<String> fields;
+
+		private SearchCriteria(Map<String, String> searchCriteria, int maxPageSize) {
+			minSalary = searchCriteria.get("minSalary") != null
+					? Double.parseDouble(searchCriteria.get("minSalary").toString())
+					: 0;
+			maxSalary = searchCriteria.get("maxSalary") != null
+					? Double.parseDouble(searchCriteria.get("maxSalary").toString())
+					: 4000;
+			logger.info("min salary: {}", minSalary);
+			logger.info("max salary: {}", maxSalary);
+
+			name = TextMatch.parse(searchCriteria.get("name"));
+			login = TextMatch.parse(searchCriteria.get("login"));
+
+			String[] sort = parseSort(searchCriteria.get("sort"));
+			sortProperty = sort[0];
+			descending = sort[1].equals("desc");
+
+			if (searchCriteria.get("cursor") != null) {
+				String[] cursor = decodeCursor(searchCriteria.get("cursor"), sortKey());
+				afterId = cursor[1];
+				seek = seekAfter(cursor[0], cursor[1]);
 			} else {
+				afterId = null;
+				seek = null;
+			}
+
+			limit = searchCriteria.get("limit") != null ? parseLimit(searchCriteria.get("limit"), maxPageSize) : null;
+			fields = parseFields(searchCriteria.get("fields"));
+		}
 
-				sj = validateFormat(employeeList.get(i));
-				// i + 2 to show row number in CSV file
-				// sj.toString return the error field
-				if (sj.length() > 0) {
-					errorList.add(String.format(ResponseMessage.MSG_ERR_INVALID_FORMAT_FIELD, i + 2, sj.toString()));
+		private boolean isIdOrder() {
+			return sortProperty.equals("id") && !descending;
+		}
+
+		private String sortKey() {
+			return sortProperty + "," + (descending ? "desc" : "asc");
+		}
+
+		// ORDER BY the sort property and the id, evaluated with the LIMIT by the
+		// database
+		private Sort sort() {
+			Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+			Sort sort = Sort.by(direction, sortProperty);
+			return sortProperty.equals("id") ? sort : sort.and(Sort.by(direction, "id"));
+		}
 
+		private Specification<Employee> seekAfter(String value, String id) {
+			try {
+				switch (sortProperty) {
+				case "login":
+					return EmployeeSpecification.seekAfter(Employee_.login, value, id, descending);
+				case "name":
+					return EmployeeSpecification.seekAfter(Employee_.name, value, id, descending);
+				case "salary":
+					return EmployeeSpecification.seekAfter(Employee_.salary, Double.valueOf(value), id, descending);
+				case "startDate":
+					return EmployeeSpecification.seekAfter(Employee_.startDate, new Date(Long.parseLong(value)), id,
+							descending);
+				default:
+					return descending ? EmployeeSpecification.idBefore(id) : EmployeeSpecification.idAfter(id);
 				}
+			} catch (NumberFormatException ex) {
+				throw new BadInputException(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, "cursor"));
 			}
 		}
 
-		if (errorList.size() > 0) {
-			throw new BadInputException(errorList.toString());
+		// the cursor holds the sort value and id of the last row of the page
+		private String nextCursor(Employee employee) {
+			if (isIdOrder()) {
+				return encodeCursor(employee.getId());
+			}
+
+			String value;
+			switch (sortProperty) {
+			case "login":
+				value = employee.getLogin();
+				break;
+			case "name":
+				value = employee.getName();
+				break;
+			case "salary":
+				value = employee.getSalary().toString();
+				break;
+			case "startDate":
+				value = Long.toString(employee.getstartDate().getTime());
+				break;
+			default:
+				value = employee.getId();
+			}
+			return encodeCursor(sortKey() + CURSOR_SEPARATOR + value + CURSOR_SEPARATOR + employee.getId());
 		}
 
-		// validate database records with CSV records
-		for (int a = 0; a < employeeList.size(); a++) {
-			Employee validateEmployee = employeeList.get(a);
-			if (employeeRepository.existsByLoginAndIdNot(validateEmployee.getLogin(), validateEmployee.getId())) {
-				errorList.add(String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_ROW_FIELD, a + 2,
-						validateEmployee.getLogin()));
+		// the id and the sort property are always read, the next cursor is built
+		// from them
+		private Set<String> selectedColumns() {
+			if (fields == null) {
+				return null;
 			}
+
+			Set<String> columns = new LinkedHashSet<>(fields);
+			columns.add("id");
+			columns.add(sortProperty);
+			return columns;
 		}
 
-		if (errorList.size() > 0) {
-			throw new BadInputException(errorList.toString());
+		private Employee clearUnselected(Employee employee) {
+			if (fields == null) {
+				return employee;
+			}
+
+			if (!fields.contains("id")) {
+				employee.setId(null);
+			}
+			if (!fields.contains("login")) {
+				employee.setLogin(null);
+			}
+			if (!fields.contains("name")) {
+				employee.setName(null);
+			}
+			if (!fields.contains("salary")) {
+				employee.setSalary(null);
+			}
+			if (!fields.contains("startDate")) {
+				employee.setstartDate(null);
+			}
+			return employee;
 		}
 	}
 
-	private List<String> validateDuplicateUserList(List<Employee> employeeList) {
+	private static Set<String> parseFields(String fields) {
+		if (fields == null || fields.trim().isEmpty()) {
+			return null;
+		}
 
-		Map<String, Integer> duplicateIdList = new HashMap<>();
-		Map<String, Integer> duplicateLoginList = new HashMap<>();
-		List<String> errorList = new ArrayList<>();
+		Set<String> fieldSet = new LinkedHashSet<>();
+		for (String field : fields.split(",")) {
+			if (!EMPLOYEE_FIELDS.contains(field.trim())) {
+				throw new BadInputException(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, "fields"));
+			}
+			fieldSet.add(field.trim());
+		}
+		return fieldSet;
+	}
 
-		employeeList.stream().forEach(item -> {
-			// check duplicate ID , if val = null , then map val = 1 else val +1
-			duplicateIdList.compute(item.getId().toLowerCase(), (key, val) -> val == null ? 1 : val + 1);
-			logger.info("duplicateIdList : {}", duplicateIdList);
-			// check duplicate Login , if val = null , then map val = 1 else val +1
-			duplicateLoginList.compute(item.getLogin().toLowerCase(), (key, val) -> val == null ? 1 : val + 1);
-			logger.info("duplicateLoginList : {}", duplicateLoginList);
-		});
+	// property[,asc|desc], ascending id order by default
+	private static String[] parseSort(String sort) {
+		if (sort == null || sort.trim().isEmpty()) {
+			return new String[] { "id", "asc" };
+		}
 
-		String duplicateList = duplicateIdList.entrySet().stream().filter(map -> map.getValue() > 1)
-				.map(map -> map.getKey()).collect(Collectors.joining(","));
-		logger.info("duplicateList : {}", duplicateList);
+		String[] parts = sort.split(",");
+		String property = parts[0].trim();
+		String direction = parts.length > 1 ? parts[1].trim().toLowerCase() : "asc";
 
-		if (!duplicateList.trim().isEmpty()) {
-			errorList.add(String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_IDS, duplicateList));
+		if (parts.length > 2 || !EMPLOYEE_FIELDS.contains(property)
+				|| !(direction.equals("asc") || direction.equals("desc"))) {
+			throw new BadInputException(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, "sort"));
 		}
+		return new String[] { property, direction };
+	}
 
-		String duplicateLogin = duplicateLoginList.entrySet().stream().filter(map -> map.getValue() > 1)
-				.map(map -> map.getKey()).collect(Collectors.joining(","));
-		logger.info("duplicateLogin : {}", duplicateLogin);
+	// the page is read with one extra row, the maximum also keeps limit + 1 in
+	// range
+	private static int parseLimit(String limit, int maxPageSize) {
+		int value;
+		try {
+			value = Integer.parseInt(limit);
+		} catch (NumberFormatException ex) {
+			logger.info("invalid limit: {}", limit);
+			throw new BadInputException(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, "limit"));
+		}
 
-		if (!duplicateLogin.trim().isEmpty()) {
-			errorList.add(String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_LOGINS, duplicateLogin));
+		if (value <= 0) {
+			throw new BadInputException(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, "limit"));
+		}
+		if (value > maxPageSize) {
+			throw new BadInputException(String.format(ResponseMessage.MSG_ERR_PAGE_SIZE_LIMIT, maxPageSize));
 		}
+		return value;
+	}
+
+	// cursors are opaque to clients. In the default order the cursor is the
+	// last id of the page, otherwise it is the sort, the sort value and the id
+	private static String encodeCursor(String cursor) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+	}
 
-		return errorList;
+	// the sort value and the id, a cursor of another sort order is rejected
+	private static String[] decodeCursor(String cursor, String sortKey) {
+		String decoded;
+		try {
+			decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException ex) {
+			throw new BadInputException(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, "cursor"));
+		}
 
+		String[] parts = decoded.split(CURSOR_SEPARATOR, -1);
+		if (parts.length == 1 && sortKey.equals("id,asc")) {
+			return new String[] { decoded, decoded };
+		}
+		if (parts.length != 3 || !parts[0].equals(sortKey)) {
+			throw new BadInputException(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, "cursor"));
+		}
+		return new String[] { parts[1], parts[2] };
 	}
 
-	private void createOrUpdateEmployee(Employee employee) {
+	@Override
+	@Transactional
+	public UploadResult uploadAndSaveEmployee(MultipartFile file) {
+		validateCsvSize(file);
 
-		StringJoiner errorMessage = new StringJoiner(",");
+		try {
+			return readAndSaveEmployee(file.getInputStream(), rowsProcessed -> {
+			});
+		} catch (IOException ex) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_FILE_READING);
+		}
+	}
 
-		StringJoiner sj = validateMandatoryField(employee);
+	@Override
+	@Transactional
+	public UploadResult uploadAndSaveEmployee(InputStream csvStream, LongConsumer progressListener) {
+		return readAndSaveEmployee(csvStream, progressListener);
+	}
 
-		logger.info("request object: {}", sj);
-		if (sj.length() > 0) {
-			errorMessage.add(String.format(ResponseMessage.MSG_ERR_MANDATORY_FIELD, sj.toString()));
+	private UploadResult readAndSaveEmployee(InputStream csvStream, LongConsumer progressListener) {
+
+		UploadState upload = new UploadState();
+
+		// the rows are only known as they are read, each chunk locks its keys
+		// before it is validated against the table
+		employeeLockService.lockUpload();
+
+		// gzip compressed uploads are inflated on the fly
+		try (Reader reader = new CsvCommentFilterReader(
+				new InputStreamReader(GzipUtil.decompressIfGzip(csvStream), StandardCharsets.UTF_8))) {
+
+			employeeCsvPipeline.read(reader, this::validateRow,
+					validatedChunk -> saveValidatedChunk(validatedChunk, upload, progressListener));
+		} catch (IOException ex) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_FILE_READING);
 		}
 
-		sj = validateFormat(employee);
+		upload.throwIfErrors();
+		logger.info("upload result: {}", upload.uploadResult);
 
-		if (sj.length() > 0) {
-			errorMessage.add(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, sj.toString()));
+		// delivered to transactional listeners once the upload commits
+		if (upload.uploadResult.isDataChanged()) {
+			applicationEventPublisher.publishEvent(new EmployeeChangeEvent(EmployeeChangeEvent.Type.UPLOADED, null,
+					upload.salaryDelta));
 		}
+		return upload.uploadResult;
+	}
 
-		if (errorMessage.length() > 0) {
-			throw new BadInputException(errorMessage.toString());
+	// rows are validated and persisted one chunk at a time, any error rolls back
+	// the whole upload
+	private void saveValidatedChunk(ValidatedChunk validatedChunk, UploadState upload,
+			LongConsumer progressListener) {
+
+		List<Employee> employeeChunk = validatedChunk.getEmployees();
+
+		validateRows(validatedChunk, upload);
+
+		if (!upload.hasErrors()) {
+			employeeLockService.lockKeys(lockKeys(employeeChunk));
+			validateDatabaseLogins(employeeChunk, upload);
 		}
 
-		Optional<Employee> employeeDb = employeeRepository.findById(employee.getId());
+		if (!upload.hasErrors()) {
+			saveEmployeeChunk(employeeChunk, upload);
+		}
 
-		Employee updateEmployee = employee;
+		upload.rowOffset += employeeChunk.size();
+		logger.info("rows processed: {}", upload.rowOffset);
+		progressListener.accept(upload.rowOffset);
+	}
+
+	// one SELECT prefetches the existing rows of the chunk, inserts and updates
+	// are then written through JDBC batches on flush
+	private void saveEmployeeChunk(List<Employee> employeeChunk, UploadState upload) {
+
+		Map<String, Employee> employeeDbList = employeeRepository
+				.findAllById(employeeChunk.stream().map(Employee::getId).collect(Collectors.toList())).stream()
+				.collect(Collectors.toMap(Employee::getId, Function.identity()));
+		// the logins given up by updated rows, the upload waits for them
+		lockChangedLogins(employeeDbList.values());
+
+		List<EmployeeAudit> chunkAudit = new ArrayList<>();
+		for (Employee employee : employeeChunk) {
+
+			Employee employeeDb = employeeDbList.get(employee.getId());
+			if (employeeDb == null) {
+				// persist instead of save, save() would SELECT the assigned id first
+				entityManager.persist(employee);
+				upload.salaryDelta.add(employee);
+				chunkAudit.add(new EmployeeAudit(EmployeeChangeEvent.Type.CREATED, employee.getId(), null,
+						EmployeeImage.of(employee)));
+				upload.uploadResult.addCreated();
+			} else if (employeeDb.isChangedBy(employee)) {
+				// managed entity, the UPDATE is issued by dirty checking on flush
+				upload.salaryDelta.remove(employeeDb);
+				EmployeeImage before = EmployeeImage.of(employeeDb);
+				employeeDb.employeeUpdate(employee);
+				upload.salaryDelta.add(employeeDb);
+				chunkAudit.add(new EmployeeAudit(EmployeeChangeEvent.Type.UPDATED, employee.getId(), before,
+						EmployeeImage.of(employeeDb)));
+				upload.uploadResult.addUpdated();
+			} else {
+				// unchanged rows are not dirty checked or written
+				entityManager.detach(employeeDb);
+				upload.uploadResult.addUnchanged();
+			}
 
-		if (employeeDb.isPresent()) {
-			updateEmployee = employeeDb.get().employeeUpdate(employee);
 		}
-		employeeRepository.save(employee);
+
+		// the audit of the chunk goes with it, committed with the upload
+		employeeAuditService.saveWithTransaction(chunkAudit);
+
+		// keep the persistence context bounded to a single chunk
+		entityManager.flush();
+		entityManager.clear();
 	}
 
-	private void validateCreateEmployee(Employee employee) {
-		validateExistingEmployeeID(employee);
-		validateDuplicateLogin(employee);
+	private void validateCsvSize(MultipartFile file) {
+
+		// a negative max-file-size disables the limit
+		if (maxFileSize != null && maxFileSize.toBytes() >= 0 && file.getSize() > maxFileSize.toBytes()) {
+			throw new BadInputException(String.format(ResponseMessage.MSG_ERR_FILE_SIZE_LIMIT, maxFileSize));
+		}
 
 	}
 
-	private void validateUpdateEmployee(Employee employee) {
-		validateNonExistingEmployeeID(employee);
-		validateDuplicateLogin(employee);
+	public void validateUserList(List<Employee> employeeList) {
+
+		UploadState upload = new UploadState();
 
+		validateRows(EmployeeCsvPipeline.validateChunk(employeeList, this::validateRow), upload);
+		upload.throwIfErrors();
+
+		validateDatabaseLogins(employeeList, upload);
+		upload.throwIfErrors();
 	}
 
-	// Validation
-	private void validateExistingEmployeeID(Employee employee) {
-		if (employeeRepository.existsById(employee.getId())) {
-			throw new BadInputException(ResponseMessage.MSG_ERR_EMPLOYEE_EXIST);
+	// duplicates are found within the chunk, row errors come from the pipeline
+	private void validateRows(ValidatedChunk validatedChunk, UploadState upload) {
+
+		upload.findDuplicates(validatedChunk.getEmployees());
+
+		validatedChunk.getRowErrors().forEach(rowError -> upload.rowErrors.add(rowError.toMessage(upload.rowOffset)));
+	}
+
+	// validation of a single CSV row, runs on the pipeline workers
+	RowError validateRow(int index, Employee employee) {
+
+		StringJoiner sj = validateMandatoryField(employee);
+		if (sj.length() > 0) {
+			return new RowError(index, ResponseMessage.MSG_ERR_MANDATORY_ROW_FIELD, sj.toString());
 		}
 
+		sj = validateFormat(employee);
+		// sj.toString return the error field
+		if (sj.length() > 0) {
+			return new RowError(index, ResponseMessage.MSG_ERR_INVALID_FORMAT_FIELD, sj.toString());
+		}
+
+		return null;
 	}
 
-	private void validateNonExistingEmployeeID(Employee employee) {
-		if (!employeeRepository.existsById(employee.getId())) {
-			throw new BadInputException(ResponseMessage.MSG_ERR_NO_SUCH_EMPLOYEE);
+	// validate database records with CSV records
+	private void validateDatabaseLogins(List<Employee> employeeList, UploadState upload) {
+
+		Map<String, String> idByLogin = new HashMap<>();
+		employeeList.forEach(employee -> idByLogin.put(employee.getLogin(), employee.getId()));
+
+		Set<String> conflictingLogins = employeeRepository.findConflictingLogins(idByLogin);
+		if (conflictingLogins.isEmpty()) {
+			return;
 		}
 
+		for (int a = 0; a < employeeList.size(); a++) {
+			Employee validateEmployee = employeeList.get(a);
+			if (conflictingLogins.contains(validateEmployee.getLogin())) {
+				upload.databaseErrors.add(String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_ROW_FIELD,
+						upload.rowOffset + a + 2, validateEmployee.getLogin()));
+			}
+		}
 	}
 
-	private void validateDuplicateLogin(Employee employee) {
-		if (employeeRepository.existsByLoginAndIdNot(employee.getLogin(), employee.getId())) {
-			throw new BadInputException(ResponseMessage.MSG_ERR_NOT_UNIQUE_EMPLOYEE_LOGIN);
+	// validation and result state carried across the chunks of a single upload.
+	// No key of the file is kept past its chunk, so the state only grows with
+	// the errors found
+	private static class UploadState {
+
+		private final Set<String> duplicateIdList = new LinkedHashSet<>();
+		private final Set<String> duplicateLoginList = new LinkedHashSet<>();
+		private final List<String> rowErrors = new ArrayList<>();
+		private final List<String> databaseErrors = new ArrayList<>();
+		private int rowOffset;
+		private final UploadResult uploadResult = new UploadResult();
+		private final SalaryStatistics salaryDelta = new SalaryStatistics();
+
+		// ids and logins repeated within the chunk. A login repeated in a later
+		// chunk is found taken by validateDatabaseLogins, an id repeated in a
+		// later chunk updates the row the earlier chunk saved
+		private void findDuplicates(List<Employee> employeeChunk) {
+			Set<String> ids = new HashSet<>();
+			Set<String> logins = new HashSet<>();
+			for (Employee item : employeeChunk) {
+				if (item.getId() != null && !ids.add(item.getId().toLowerCase())) {
+					duplicateIdList.add(item.getId().toLowerCase());
+				}
+				if (item.getLogin() != null && !logins.add(item.getLogin().toLowerCase())) {
+					duplicateLoginList.add(item.getLogin().toLowerCase());
+				}
+			}
+		}
+
+		private boolean hasErrors() {
+			return !duplicateIdList.isEmpty() || !duplicateLoginList.isEmpty() || !rowErrors.isEmpty()
+					|| !databaseErrors.isEmpty();
+		}
+
+		private void throwIfErrors() {
+			if (!hasErrors()) {
+				return;
+			}
+
+			List<String> errorList = new ArrayList<>();
+
+			String duplicateList = String.join(",", duplicateIdList);
+			logger.info("duplicateList : {}", duplicateList);
+
+			if (!duplicateList.trim().isEmpty()) {
+				errorList.add(String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_IDS, duplicateList));
+			}
+
+			String duplicateLogin = String.join(",", duplicateLoginList);
+			logger.info("duplicateLogin : {}", duplicateLogin);
+
+			if (!duplicateLogin.trim().isEmpty()) {
+				errorList.add(String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_LOGINS, duplicateLogin));
+			}
+
+			errorList.addAll(rowErrors);
+			errorList.addAll(databaseErrors);
+			throw new BadInputException(errorList.toString());
+		}
+	}
+
+	private void validateEmployeeFields(Employee employee) {
+
+		StringJoiner errorMessage = new StringJoiner(",");
+
+		StringJoiner sj = validateMandatoryField(employee);
+
+		logger.info("request object: {}", sj);
+		if (sj.length() > 0) {
+			errorMessage.add(String.format(ResponseMessage.MSG_ERR_MANDATORY_FIELD, sj.toString()));
+		}
+
+		sj = validateFormat(employee);
+
+		if (sj.length() > 0) {
+			errorMessage.add(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, sj.toString()));
+		}
+
+		if (errorMessage.length() > 0) {
+			throw new BadInputException(errorMessage.toString());
+		}
+	}
+
+	// the login constraint is named, any other violation is the primary key
+	private static boolean isLoginViolation(DataIntegrityViolationException ex) {
+		if (ex.getCause() instanceof ConstraintViolationException) {
+			String constraintName = ((ConstraintViolationException) ex.getCause()).getConstraintName();
+			return constraintName != null && constraintName.toUpperCase().contains(Employee.LOGIN_CONSTRAINT);
+		}
+		return false;
+	}
+
+	// Validation
+	private void validateNonExistingEmployeeID(Employee employee) {
+		if (!employeeRepository.existsById(employee.getId())) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_NO_SUCH_EMPLOYEE);
 		}
 
 	}
@@ -0,0 +1,477 @@
+package com.nphcswe.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+import com.nphcswe.helper.TextMatch;
+import com.nphcswe.model.Employee;
+
+/**
+ * Immutable columnar copy of the employee table. Rows are kept in id order as
+ * primitive columns, login and name are codes into a shared dictionary and a
+ * salary sorted index maps salaries back to row ordinals, so a salary range is
+ * two binary searches and a slice. Lower cased logins and names are indexed by
+ * trigram, a text match intersects posting lists and only verifies candidates.
+ * Rows changed since the columns were built are kept by id next to them and
+ * replace their column rows in searches, until they are compacted into new
+ * columns.
+ */
+public class EmployeeSnapshot {
+
+	private static final ZoneId ZONE = ZoneId.systemDefault();
+
+	// change version of the table this snapshot was read at
+	private final long version;
+
+	private final String[] ids;
+
+	private final int[] loginCodes;
+
+	private final int[] nameCodes;
+
+	private final double[] salaries;
+
+	private final int[] startEpochDays;
+
+	private final String[] dictionary;
+
+	private final String[] lowerCaseDictionary;
+
+	// trigram to the ascending ordinals of rows containing it
+	private final Map<String, int[]> loginTrigrams;
+
+	private final Map<String, int[]> nameTrigrams;
+
+	private final double[] sortedSalaries;
+
+	private final int[] salaryOrdinals;
+
+	// rows changed after the columns were built by id, null for a deleted row
+	private final NavigableMap<String, Employee> changedRows;
+
+	private EmployeeSnapshot(long version, String[] ids, int[] loginCodes, int[] nameCodes, double[] salaries,
+			int[] startEpochDays, String[] dictionary, Map<String, int[]> loginTrigrams,
+			Map<String, int[]> nameTrigrams) {
+		this.version = version;
+		this.ids = ids;
+		this.loginCodes = loginCodes;
+		this.nameCodes = nameCodes;
+		this.salaries = salaries;
+		this.startEpochDays = startEpochDays;
+		this.dictionary = dictionary;
+		this.lowerCaseDictionary = Arrays.stream(dictionary).map(TextMatch::toLowerCase).toArray(String[]::new);
+		this.loginTrigrams = loginTrigrams;
+		this.nameTrigrams = nameTrigrams;
+		this.changedRows = Collections.emptyNavigableMap();
+
+		this.salaryOrdinals = IntStream.range(0, ids.length).boxed()
+				.sorted((a, b) -> Double.compare(salaries[a], salaries[b])).mapToInt(Integer::intValue).toArray();
+		this.sortedSalaries = new double[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			sortedSalaries[i] = salaries[salaryOrdinals[i]];
+		}
+	}
+
+	// the columns are shared, only the changed rows are copied
+	private EmployeeSnapshot(EmployeeSnapshot columns, long version, NavigableMap<String, Employee> changedRows) {
+		this.version = version;
+		this.ids = columns.ids;
+		this.loginCodes = columns.loginCodes;
+		this.nameCodes = columns.nameCodes;
+		this.salaries = columns.salaries;
+		this.startEpochDays = columns.startEpochDays;
+		this.dictionary = columns.dictionary;
+		this.lowerCaseDictionary = columns.lowerCaseDictionary;
+		this.loginTrigrams = columns.loginTrigrams;
+		this.nameTrigrams = columns.nameTrigrams;
+		this.sortedSalaries = columns.sortedSalaries;
+		this.salaryOrdinals = columns.salaryOrdinals;
+		this.changedRows = changedRows;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	// rows of the columns, changed rows not counted
+	public int size() {
+		return ids.length;
+	}
+
+	public int getChangedRowCount() {
+		return changedRows.size();
+	}
+
+	// a copy with the rows replaced by id, null removes the row
+	public EmployeeSnapshot apply(long version, Map<String, Employee> rows) {
+		NavigableMap<String, Employee> changed = new TreeMap<>(changedRows);
+		changed.putAll(rows);
+		return new EmployeeSnapshot(this, version, Collections.unmodifiableNavigableMap(changed));
+	}
+
+	// the changed rows folded into new columns
+	public EmployeeSnapshot compact() {
+		Builder builder = new Builder(version);
+
+		Iterator<Map.Entry<String, Employee>> changed = changedRows.entrySet().iterator();
+		Map.Entry<String, Employee> next = changed.hasNext() ? changed.next() : null;
+		for (int ordinal = 0; ordinal < ids.length; ordinal++) {
+			while (next != null && next.getKey().compareTo(ids[ordinal]) < 0) {
+				addIfPresent(builder, next.getValue());
+				next = changed.hasNext() ? changed.next() : null;
+			}
+			if (next == null || !next.getKey().equals(ids[ordinal])) {
+				builder.add(toEmployee(ordinal));
+			}
+		}
+		while (next != null) {
+			addIfPresent(builder, next.getValue());
+			next = changed.hasNext() ? changed.next() : null;
+		}
+		return builder.build();
+	}
+
+	private static void addIfPresent(Builder builder, Employee employee) {
+		if (employee != null) {
+			builder.add(employee);
+		}
+	}
+
+	// rows of this snapshot changed after the given one was taken, the given
+	// one was built on the same columns
+	public Map<String, Employee> changedSince(EmployeeSnapshot earlier) {
+		Map<String, Employee> rows = new HashMap<>();
+		changedRows.forEach((id, employee) -> {
+			if (!earlier.changedRows.containsKey(id) || earlier.changedRows.get(id) != employee) {
+				rows.put(id, employee);
+			}
+		});
+		return rows;
+	}
+
+	public boolean hasSameColumns(EmployeeSnapshot other) {
+		return ids == other.ids;
+	}
+
+	// employees with minSalary < salary < maxSalary, matching name and login when
+	// given and id > afterId in id order, at most maxRows of them
+	public List<Employee> search(double minSalary, double maxSalary, TextMatch name, TextMatch login, String afterId,
+			int maxRows) {
+
+		int from = firstAbove(minSalary);
+		int to = firstAtLeast(maxSalary);
+		if (from >= to && changedRows.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		int[] ordinals = Arrays.copyOfRange(salaryOrdinals, from, Math.max(from, to));
+		Arrays.sort(ordinals);
+
+		if (name != null) {
+			ordinals = match(ordinals, name, nameCodes, nameTrigrams);
+		}
+
+		if (login != null) {
+			ordinals = match(ordinals, login, loginCodes, loginTrigrams);
+		}
+
+		int start = afterId != null ? firstOrdinalAfter(ordinals, afterId) : 0;
+		if (changedRows.isEmpty()) {
+			int end = (int) Math.min(ordinals.length, (long) start + maxRows);
+
+			List<Employee> employeeList = new ArrayList<>(Math.max(0, end - start));
+			for (int i = start; i < end; i++) {
+				employeeList.add(toEmployee(ordinals[i]));
+			}
+			return employeeList;
+		}
+
+		// column rows and matching changed rows merged in id order, a changed
+		// row replaces the column row of its id
+		Iterator<Employee> changed = (afterId != null ? changedRows.tailMap(afterId, false) : changedRows).values()
+				.stream().filter(employee -> employee != null && matches(employee, minSalary, maxSalary, name, login))
+				.iterator();
+		Employee nextChanged = changed.hasNext() ? changed.next() : null;
+
+		List<Employee> employeeList = new ArrayList<>();
+		int i = start;
+		while (employeeList.size() < maxRows) {
+			if (i < ordinals.length && changedRows.containsKey(ids[ordinals[i]])) {
+				i++;
+			} else if (i < ordinals.length
+					&& (nextChanged == null || ids[ordinals[i]].compareTo(nextChanged.getId()) < 0)) {
+				employeeList.add(toEmployee(ordinals[i++]));
+			} else if (nextChanged != null) {
+				employeeList.add(copy(nextChanged));
+				nextChanged = changed.hasNext() ? changed.next() : null;
+			} else {
+				break;
+			}
+		}
+		return employeeList;
+	}
+
+	private static boolean matches(Employee employee, double minSalary, double maxSalary, TextMatch name,
+			TextMatch login) {
+		return employee.getSalary() > minSalary && employee.getSalary() < maxSalary
+				&& (name == null || textMatches(name, employee.getName()))
+				&& (login == null || textMatches(login, employee.getLogin()));
+	}
+
+	private static boolean textMatches(TextMatch textMatch, String text) {
+		return text != null && textMatch.matches(TextMatch.toLowerCase(text));
+	}
+
+	// searches hand out copies, callers may change what they get
+	private static Employee copy(Employee changed) {
+		Employee employee = new Employee();
+		employee.setId(changed.getId());
+		employee.setLogin(changed.getLogin());
+		employee.setName(changed.getName());
+		employee.setSalary(changed.getSalary());
+		employee.setstartDate(changed.getstartDate() != null ? new Date(changed.getstartDate().getTime()) : null);
+		return employee;
+	}
+
+	// rows of ordinals whose text matches, trigrams only narrow the candidates
+	// as they ignore order and position
+	private int[] match(int[] ordinals, TextMatch textMatch, int[] codes, Map<String, int[]> trigramIndex) {
+
+		List<int[]> postings = new ArrayList<>();
+		for (String trigram : trigrams(textMatch.getValue())) {
+			int[] posting = trigramIndex.get(trigram);
+			if (posting == null) {
+				return new int[0];
+			}
+			postings.add(posting);
+		}
+
+		// smallest posting lists first keep the intersections short
+		postings.sort(Comparator.comparingInt(posting -> posting.length));
+		int[] candidates = ordinals;
+		if (!postings.isEmpty()) {
+			candidates = postings.get(0);
+			for (int i = 1; i < postings.size(); i++) {
+				candidates = intersect(candidates, postings.get(i));
+			}
+			candidates = intersect(candidates, ordinals);
+		}
+
+		int[] matches = new int[candidates.length];
+		int count = 0;
+		for (int ordinal : candidates) {
+			if (textMatch.matches(lowerCaseDictionary[codes[ordinal]])) {
+				matches[count++] = ordinal;
+			}
+		}
+		return Arrays.copyOf(matches, count);
+	}
+
+	// both arrays ascending, a short array is looked up in a long one by binary
+	// search instead of a merge
+	private static int[] intersect(int[] a, int[] b) {
+		int[] small = a.length <= b.length ? a : b;
+		int[] large = a.length <= b.length ? b : a;
+
+		int[] result = new int[small.length];
+		int count = 0;
+
+		if ((long) small.length * 32 < large.length) {
+			for (int value : small) {
+				if (Arrays.binarySearch(large, value) >= 0) {
+					result[count++] = value;
+				}
+			}
+		} else {
+			int i = 0;
+			int j = 0;
+			while (i < small.length && j < large.length) {
+				if (small[i] < large[j]) {
+					i++;
+				} else if (small[i] > large[j]) {
+					j++;
+				} else {
+					result[count++] = small[i];
+					i++;
+					j++;
+				}
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	// distinct trigrams, none for text shorter than three characters
+	private static Set<String> trigrams(String text) {
+		Set<String> trigrams = new HashSet<>();
+		for (int i = 0; i + 3 <= text.length(); i++) {
+			trigrams.add(text.substring(i, i + 3));
+		}
+		return trigrams;
+	}
+
+	private Employee toEmployee(int ordinal) {
+		Employee employee = new Employee();
+		employee.setId(ids[ordinal]);
+		employee.setLogin(dictionary[loginCodes[ordinal]]);
+		employee.setName(dictionary[nameCodes[ordinal]]);
+		employee.setSalary(salaries[ordinal]);
+		employee.setstartDate(Date.from(LocalDate.ofEpochDay(startEpochDays[ordinal]).atStartOfDay(ZONE).toInstant()));
+		return employee;
+	}
+
+	// index of the first sorted salary > value
+	private int firstAbove(double value) {
+		int low = 0;
+		int high = sortedSalaries.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sortedSalaries[mid] > value) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	// index of the first sorted salary >= value
+	private int firstAtLeast(double value) {
+		int low = 0;
+		int high = sortedSalaries.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sortedSalaries[mid] >= value) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	// ordinals follow the id order, so the ids of a sorted slice are sorted too
+	private int firstOrdinalAfter(int[] ordinals, String afterId) {
+		int low = 0;
+		int high = ordinals.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (ids[ordinals[mid]].compareTo(afterId) > 0) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	// rows have to be added in id order
+	public static class Builder {
+
+		private final long version;
+
+		private final List<String> ids = new ArrayList<>();
+
+		private final List<String> dictionary = new ArrayList<>();
+
+		private final Map<String, Integer> dictionaryCodes = new HashMap<>();
+
+		private int[] loginCodes = new int[1024];
+
+		private int[] nameCodes = new int[1024];
+
+		private double[] salaries = new double[1024];
+
+		private int[] startEpochDays = new int[1024];
+
+		private final Map<String, IntList> loginTrigrams = new HashMap<>();
+
+		private final Map<String, IntList> nameTrigrams = new HashMap<>();
+
+		public Builder(long version) {
+			this.version = version;
+		}
+
+		public Builder add(Employee employee) {
+			int row = ids.size();
+			if (row == salaries.length) {
+				int capacity = row * 2;
+				loginCodes = Arrays.copyOf(loginCodes, capacity);
+				nameCodes = Arrays.copyOf(nameCodes, capacity);
+				salaries = Arrays.copyOf(salaries, capacity);
+				startEpochDays = Arrays.copyOf(startEpochDays, capacity);
+			}
+
+			ids.add(employee.getId());
+			loginCodes[row] = encode(employee.getLogin());
+			nameCodes[row] = encode(employee.getName());
+			salaries[row] = employee.getSalary();
+			startEpochDays[row] = (int) Instant.ofEpochMilli(employee.getstartDate().getTime()).atZone(ZONE).toLocalDate()
+					.toEpochDay();
+
+			index(loginTrigrams, employee.getLogin(), row);
+			index(nameTrigrams, employee.getName(), row);
+			return this;
+		}
+
+		private static void index(Map<String, IntList> trigramIndex, String text, int row) {
+			if (text != null) {
+				trigrams(TextMatch.toLowerCase(text))
+						.forEach(trigram -> trigramIndex.computeIfAbsent(trigram, key -> new IntList()).add(row));
+			}
+		}
+
+		private static Map<String, int[]> toPostings(Map<String, IntList> trigramIndex) {
+			Map<String, int[]> postings = new HashMap<>(trigramIndex.size() * 2);
+			trigramIndex.forEach((trigram, rows) -> postings.put(trigram, rows.toArray()));
+			return postings;
+		}
+
+		private int encode(String value) {
+			return dictionaryCodes.computeIfAbsent(value, key -> {
+				dictionary.add(key);
+				return dictionary.size() - 1;
+			});
+		}
+
+		public EmployeeSnapshot build() {
+			int size = ids.size();
+			return new EmployeeSnapshot(version, ids.toArray(new String[0]), Arrays.copyOf(loginCodes, size),
+					Arrays.copyOf(nameCodes, size), Arrays.copyOf(salaries, size), Arrays.copyOf(startEpochDays, size),
+					dictionary.toArray(new String[0]), toPostings(loginTrigrams), toPostings(nameTrigrams));
+		}
+	}
+
+	// growable int array, rows are added in ascending order
+	private static class IntList {
+
+		private int[] values = new int[4];
+
+		private int size;
+
+		private void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		private int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
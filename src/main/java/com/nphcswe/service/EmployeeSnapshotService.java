@@ -0,0 +1,239 @@
+package com.nphcswe.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nphcswe.helper.TextMatch;
+import com.nphcswe.model.Employee;
+import com.nphcswe.model.EmployeeAudit;
+import com.nphcswe.model.EmployeeChangeEvent;
+import com.nphcswe.model.EmployeeImage;
+import com.nphcswe.repository.EmployeeRepository;
+
+/**
+ * In-memory read engine for salary range and name/login searches. Committed
+ * single and batch writes are applied to the published snapshot by id as they
+ * commit, the changed rows are compacted into new columns on a background
+ * thread once there are many. Uploads carry no rows on their change event, the
+ * snapshot is then rebuilt from the table and searches fall back to the
+ * database until it is.
+ */
+@Service
+public class EmployeeSnapshotService {
+	private static final Logger logger = LogManager.getLogger();
+
+	// changed rows kept next to the columns before they are compacted
+	private static final int MIN_CHANGED_ROWS = 1024;
+
+	private static final int MAX_CHANGED_ROWS = 16384;
+
+	private final boolean enabled;
+
+	// null while it misses committed changes
+	private volatile EmployeeSnapshot snapshot;
+
+	// guarded by this, the changes since the table was last read
+	private long changeVersion;
+
+	// guarded by this, a rebuild reading the table is only published when no
+	// other was requested since, with the changes that committed meanwhile
+	private long rebuildRequest;
+
+	private boolean rebuildPending;
+
+	private final Map<String, Employee> changedWhileRebuilding = new HashMap<>();
+
+	private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+	private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
+	private final ThreadPoolExecutor rebuildExecutor;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	public EmployeeSnapshotService(@Value("${employee.search.snapshot.enabled:true}") boolean enabled) {
+		this.enabled = enabled;
+		this.rebuildExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+				runnable -> new Thread(runnable, "employee-snapshot"));
+	}
+
+	// empty when disabled or when the snapshot misses a committed change
+	public Optional<List<Employee>> search(double minSalary, double maxSalary, TextMatch name, TextMatch login,
+			String afterId, int maxRows) {
+		EmployeeSnapshot current = snapshot;
+		if (current == null) {
+			return Optional.empty();
+		}
+		return Optional.of(current.search(minSalary, maxSalary, name, login, afterId, maxRows));
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady() {
+		if (enabled) {
+			requestRebuild();
+		}
+	}
+
+	// runs in the committing thread while the employee locks are held, so the
+	// changes of one employee arrive in commit order
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onEmployeeChange(EmployeeChangeEvent event) {
+		if (!enabled) {
+			return;
+		}
+
+		Map<String, Employee> changedRows = changedRows(event);
+		if (changedRows == null) {
+			requestRebuild();
+			return;
+		}
+
+		synchronized (this) {
+			changeVersion++;
+			if (rebuildPending) {
+				changedWhileRebuilding.putAll(changedRows);
+			}
+			if (snapshot != null) {
+				snapshot = snapshot.apply(changeVersion, changedRows);
+				scheduleCompaction(snapshot);
+			}
+		}
+	}
+
+	// the after image of each changed row by id, null for a deleted row. Null
+	// when the event does not say which rows changed
+	private static Map<String, Employee> changedRows(EmployeeChangeEvent event) {
+		if (event.getAudit().isEmpty()) {
+			return null;
+		}
+
+		Map<String, Employee> changedRows = new HashMap<>();
+		for (EmployeeAudit audit : event.getAudit()) {
+			EmployeeImage after = audit.getAfter();
+			Employee employee = null;
+			if (after != null) {
+				employee = new Employee();
+				employee.setId(audit.getEmployeeId());
+				employee.setLogin(after.getLogin());
+				employee.setName(after.getName());
+				employee.setSalary(after.getSalary());
+				employee.setstartDate(after.getStartDate());
+			}
+			changedRows.put(audit.getEmployeeId(), employee);
+		}
+		return changedRows;
+	}
+
+	// changes arriving while a rebuild is queued are folded into it
+	private synchronized void requestRebuild() {
+		changeVersion++;
+		snapshot = null;
+		rebuildRequest++;
+		rebuildPending = true;
+		changedWhileRebuilding.clear();
+		if (rebuildScheduled.compareAndSet(false, true)) {
+			rebuildExecutor.execute(this::rebuild);
+		}
+	}
+
+	// the changed rows are copied on every write, their count stays bounded
+	private void scheduleCompaction(EmployeeSnapshot current) {
+		if (current.getChangedRowCount() > Math.max(MIN_CHANGED_ROWS, Math.min(MAX_CHANGED_ROWS, current.size() / 64))
+				&& compactionScheduled.compareAndSet(false, true)) {
+			rebuildExecutor.execute(this::compact);
+		}
+	}
+
+	private void rebuild() {
+		rebuildScheduled.set(false);
+		long request;
+		synchronized (this) {
+			request = rebuildRequest;
+		}
+
+		try {
+			TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+			transactionTemplate.setReadOnly(true);
+
+			EmployeeSnapshot rebuilt = transactionTemplate.execute(status -> {
+				EmployeeSnapshot.Builder builder = new EmployeeSnapshot.Builder(0);
+				try (Stream<Employee> employeeStream = employeeRepository.streamAll(Specification.where(null),
+						Sort.by(Sort.Direction.ASC, "id"))) {
+					employeeStream.forEach(employee -> {
+						builder.add(employee);
+						entityManager.detach(employee);
+					});
+				}
+				return builder.build();
+			});
+
+			// changes committed while the table was read are applied again, a row
+			// read already is replaced by the same values
+			synchronized (this) {
+				if (request != rebuildRequest) {
+					return;
+				}
+				snapshot = rebuilt.apply(changeVersion, changedWhileRebuilding);
+				rebuildPending = false;
+				changedWhileRebuilding.clear();
+				scheduleCompaction(snapshot);
+				logger.info("employee snapshot version {} rebuilt with {} rows", changeVersion, rebuilt.size());
+			}
+		} catch (RuntimeException ex) {
+			logger.error("employee snapshot rebuild failed", ex);
+		}
+	}
+
+	// new columns are built without holding back writes, the rows they changed
+	// meanwhile are kept as changed rows of the compacted snapshot
+	private void compact() {
+		compactionScheduled.set(false);
+		EmployeeSnapshot current = snapshot;
+		if (current == null) {
+			return;
+		}
+
+		EmployeeSnapshot compacted = current.compact();
+		synchronized (this) {
+			if (snapshot != null && snapshot.hasSameColumns(current)) {
+				snapshot = compacted.apply(changeVersion, snapshot.changedSince(current));
+			}
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		rebuildExecutor.shutdownNow();
+	}
+}
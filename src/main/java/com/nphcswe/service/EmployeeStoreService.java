@@ -0,0 +1,244 @@
+package com.nphcswe.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nphcswe.model.EmployeeChangeEvent;
+
+/**
+ * Warm restarts for the in-memory database. The table is written to a compact
+ * binary snapshot file periodically and on shutdown, and bulk loaded with
+ * batched JDBC inserts at startup before the server takes requests. Changes
+ * after the last write are lost if the process is killed.
+ */
+// destroyed before the entity manager factory, whose create-drop drops the
+// table the final snapshot is read from
+@Service
+@DependsOn("entityManagerFactory")
+public class EmployeeStoreService implements SmartInitializingSingleton {
+	private static final Logger logger = LogManager.getLogger();
+
+	// "EMPS", bumped version numbers are refused by load
+	private static final int MAGIC = 0x454d5053;
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int INSERT_BATCH_SIZE = 10000;
+
+	private static final String SELECT_ALL = "SELECT id, login, name, salary, start_date FROM Employees_Table ORDER BY id";
+
+	private static final String INSERT = "INSERT INTO Employees_Table (id, login, name, salary, start_date) VALUES (?, ?, ?, ?, ?)";
+
+	private final Path snapshotPath;
+
+	private final AtomicLong changeVersion = new AtomicLong();
+
+	private volatile long writtenVersion;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	public EmployeeStoreService(@Value("${employee.store.snapshot.path:}") String snapshotPath) {
+		this.snapshotPath = snapshotPath.trim().isEmpty() ? null : Paths.get(snapshotPath.trim());
+	}
+
+	// runs once the schema exists and before the web server and the scheduled
+	// statistics recompute start
+	@Override
+	public void afterSingletonsInstantiated() {
+		if (snapshotPath == null || !Files.exists(snapshotPath)) {
+			return;
+		}
+
+		if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Employees_Table", Long.class) > 0) {
+			logger.info("employee table is not empty, snapshot {} not loaded", snapshotPath);
+			return;
+		}
+
+		try {
+			load();
+		} catch (RuntimeException ex) {
+			logger.error("unable to load employee snapshot {}, starting empty", snapshotPath, ex);
+		}
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onEmployeeChange(EmployeeChangeEvent event) {
+		changeVersion.incrementAndGet();
+	}
+
+	// bulk load into the empty table at startup. Each insert batch commits on its
+	// own, a large H2 transaction costs more than the inserts, so the rows of a
+	// truncated or corrupt file are deleted again
+	public long load() {
+		long start = System.nanoTime();
+
+		long rows;
+		try (InputStream fileStream = new BufferedInputStream(Files.newInputStream(snapshotPath))) {
+			rows = readSnapshot(fileStream);
+		} catch (IOException ex) {
+			discardLoaded();
+			throw new UncheckedIOException(ex);
+		} catch (RuntimeException ex) {
+			discardLoaded();
+			throw ex;
+		}
+
+		writtenVersion = changeVersion.get();
+		logger.info("employee snapshot {} loaded, {} rows in {} ms", snapshotPath, rows,
+				(System.nanoTime() - start) / 1000000);
+		return rows;
+	}
+
+	private void discardLoaded() {
+		jdbcTemplate.update("DELETE FROM Employees_Table");
+	}
+
+	private long readSnapshot(InputStream fileStream) throws IOException {
+
+		CheckedInputStream checkedStream = new CheckedInputStream(fileStream, new CRC32());
+		DataInputStream in = new DataInputStream(checkedStream);
+
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+			throw new IOException("not an employee snapshot: " + snapshotPath);
+		}
+
+		long rows = 0;
+		List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+		while (in.readBoolean()) {
+			batch.add(new Object[] { in.readUTF(), in.readUTF(), in.readUTF(), in.readDouble(),
+					new Timestamp(in.readLong()) });
+
+			if (batch.size() == INSERT_BATCH_SIZE) {
+				insert(batch);
+				rows += batch.size();
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			insert(batch);
+			rows += batch.size();
+		}
+
+		long rowCount = in.readLong();
+		long checksum = checkedStream.getChecksum().getValue();
+		if (rowCount != rows || new DataInputStream(fileStream).readLong() != checksum) {
+			throw new IOException("corrupt employee snapshot: " + snapshotPath);
+		}
+		return rows;
+	}
+
+	private void insert(List<Object[]> batch) {
+		new TransactionTemplate(transactionManager)
+				.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT, batch));
+	}
+
+	@Scheduled(initialDelayString = "${employee.store.snapshot.interval:PT5M}", fixedDelayString = "${employee.store.snapshot.interval:PT5M}")
+	public void writeIfChanged() {
+		if (snapshotPath != null && changeVersion.get() != writtenVersion) {
+			try {
+				write();
+			} catch (RuntimeException ex) {
+				logger.error("unable to write employee snapshot {}", snapshotPath, ex);
+			}
+		}
+	}
+
+	// the table is read with one statement, a consistent view of the last
+	// commit. The file is replaced only once it is complete
+	public synchronized long write() {
+		long start = System.nanoTime();
+		long version = changeVersion.get();
+
+		try {
+			Path directory = snapshotPath.toAbsolutePath().getParent();
+			Files.createDirectories(directory);
+			Path tempFile = Files.createTempFile(directory, "employees-", ".tmp");
+
+			long rows;
+			try (OutputStream fileStream = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+				rows = writeSnapshot(fileStream);
+			} catch (IOException | RuntimeException ex) {
+				Files.deleteIfExists(tempFile);
+				throw ex;
+			}
+			Files.move(tempFile, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			writtenVersion = version;
+			logger.info("employee snapshot {} written, {} rows in {} ms", snapshotPath, rows,
+					(System.nanoTime() - start) / 1000000);
+			return rows;
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private long writeSnapshot(OutputStream fileStream) throws IOException {
+
+		CheckedOutputStream checkedStream = new CheckedOutputStream(fileStream, new CRC32());
+		DataOutputStream out = new DataOutputStream(checkedStream);
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+
+		long[] rows = { 0 };
+		jdbcTemplate.query(SELECT_ALL, resultSet -> {
+			try {
+				out.writeBoolean(true);
+				out.writeUTF(resultSet.getString(1));
+				out.writeUTF(resultSet.getString(2));
+				out.writeUTF(resultSet.getString(3));
+				out.writeDouble(resultSet.getDouble(4));
+				out.writeLong(resultSet.getTimestamp(5).getTime());
+				rows[0]++;
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		});
+
+		out.writeBoolean(false);
+		out.writeLong(rows[0]);
+		out.flush();
+		new DataOutputStream(fileStream).writeLong(checkedStream.getChecksum().getValue());
+		return rows[0];
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		writeIfChanged();
+	}
+}
@@ -0,0 +1,105 @@
+package com.nphcswe.service;
+
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nphcswe.model.Employee;
+import com.nphcswe.model.EmployeeChangeEvent;
+import com.nphcswe.model.SalaryStatistics;
+import com.nphcswe.repository.EmployeeRepository;
+
+/**
+ * Salary statistics kept up to date from the deltas of committed writes. Reads
+ * return a published copy, it is only rebuilt on the first read after a change.
+ * A periodic full recompute from the table corrects any drift.
+ */
+@Service
+public class SalaryStatisticsService {
+	private static final Logger logger = LogManager.getLogger();
+
+	private SalaryStatistics statistics = new SalaryStatistics();
+
+	private volatile SalaryStatistics published;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	@Autowired
+	private EmployeeLockService employeeLockService;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	public SalaryStatistics getStatistics() {
+		SalaryStatistics current = published;
+		if (current == null) {
+			synchronized (this) {
+				if (published == null) {
+					published = statistics.copy();
+				}
+				current = published;
+			}
+		}
+		return current;
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onEmployeeChange(EmployeeChangeEvent event) {
+		if (event.getSalaryDelta() != null) {
+			apply(event.getSalaryDelta());
+		}
+	}
+
+	private synchronized void apply(SalaryStatistics delta) {
+		statistics.merge(delta);
+		published = null;
+	}
+
+	// the table is scanned while no write is in flight, writes waiting for the
+	// scan apply their delta on top of its result
+	@Scheduled(initialDelayString = "PT0S", fixedDelayString = "${employee.stats.recompute-interval:PT1H}")
+	public void recompute() {
+		try {
+			TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+			transactionTemplate.setReadOnly(true);
+
+			SalaryStatistics recomputed = transactionTemplate.execute(status -> {
+				if (!employeeLockService.tryLockAllKeys()) {
+					return null;
+				}
+
+				SalaryStatistics rebuilt = new SalaryStatistics();
+				try (Stream<Employee> employeeStream = employeeRepository.streamAll(Specification.where(null),
+						Sort.unsorted(), Set.of("salary", "startDate"))) {
+					employeeStream.forEach(rebuilt::add);
+				}
+
+				// in place before the lock is released after the transaction
+				synchronized (this) {
+					statistics = rebuilt;
+					published = null;
+				}
+				return rebuilt;
+			});
+
+			if (recomputed == null) {
+				logger.warn("salary statistics recompute skipped, writes kept the table busy");
+			} else {
+				logger.info("salary statistics recomputed, {} rows", recomputed.getOverall().getCount());
+			}
+		} catch (RuntimeException ex) {
+			logger.error("salary statistics recompute failed", ex);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package com.nphcswe.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.nphcswe.helper.ResponseMessage;
+import com.nphcswe.helper.exception.BadInputException;
+import com.nphcswe.helper.exception.ServiceBusyException;
+import com.nphcswe.model.ResponseObject;
+import com.nphcswe.model.UploadJob;
+import com.nphcswe.model.UploadResponseObject;
+import com.nphcswe.model.UploadResult;
+
+@Service
+public class UploadJobService {
+	private static final Logger logger = LogManager.getLogger();
+
+	private final Map<String, UploadJob> uploadJobList = new ConcurrentHashMap<>();
+
+	private final ThreadPoolExecutor uploadExecutor;
+
+	private Duration jobTtl;
+
+	private final Duration retryAfter;
+
+	@Autowired
+	private UploadSpoolService uploadSpoolService;
+
+	public UploadJobService(@Value("${employee.upload.job.pool-size:2}") int poolSize,
+			@Value("${employee.upload.job.queue-capacity:10}") int queueCapacity,
+			@Value("${employee.upload.job.ttl:PT1H}") Duration jobTtl,
+			@Value("${employee.bulkhead.retry-after:PT5S}") Duration retryAfter) {
+
+		AtomicInteger threadCount = new AtomicInteger();
+		this.uploadExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				runnable -> new Thread(runnable, "upload-job-" + threadCount.incrementAndGet()));
+		this.jobTtl = jobTtl;
+		this.retryAfter = retryAfter;
+	}
+
+	// spool the upload to a temp file, the multipart content is gone once the
+	// request completes
+	public UploadJob submit(MultipartFile file) {
+
+		Path csvFile = uploadSpoolService.createTempFile();
+		try {
+			file.transferTo(csvFile);
+		} catch (IOException ex) {
+			uploadSpoolService.deleteQuietly(csvFile);
+			throw new BadInputException(ResponseMessage.MSG_ERR_FILE_READING);
+		}
+
+		logger.info("queueing upload of file {}", file.getOriginalFilename());
+		return submit(csvFile);
+	}
+
+	public UploadJob submit(InputStream requestBody) {
+		return submit(uploadSpoolService.spool(requestBody));
+	}
+
+	private UploadJob submit(Path csvFile) {
+		evictExpiredJobs();
+
+		UploadJob uploadJob = new UploadJob(UUID.randomUUID().toString());
+		uploadJobList.put(uploadJob.getJobId(), uploadJob);
+
+		try {
+			uploadExecutor.execute(() -> runJob(uploadJob, csvFile));
+		} catch (RejectedExecutionException ex) {
+			uploadJobList.remove(uploadJob.getJobId());
+			uploadSpoolService.deleteQuietly(csvFile);
+			throw new ServiceBusyException(ResponseMessage.MSG_ERR_UPLOAD_QUEUE_FULL, retryAfter);
+		}
+
+		logger.info("upload job {} queued", uploadJob.getJobId());
+		return uploadJob;
+	}
+
+	public UploadJob getJob(String jobId) {
+		evictExpiredJobs();
+
+		UploadJob uploadJob = uploadJobList.get(jobId);
+		if (uploadJob == null) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_NO_SUCH_UPLOAD_JOB);
+		}
+		return uploadJob;
+	}
+
+	private void runJob(UploadJob uploadJob, Path csvFile) {
+		uploadJob.start();
+
+		try {
+			UploadResult uploadResult = uploadSpoolService.uploadSpooled(csvFile, uploadJob::setRowsProcessed);
+			uploadJob.complete(new UploadResponseObject(uploadResult));
+		} catch (BadInputException ex) {
+			uploadJob.fail(new ResponseObject(ex.getMessage()));
+		} catch (ServiceBusyException ex) {
+			// a chunk waited too long for the rows a write was holding, the upload
+			// was rolled back and can be sent again
+			logger.warn("upload job {} busy: {}", uploadJob.getJobId(), ex.getMessage());
+			uploadJob.fail(new ResponseObject(ex.getMessage()));
+		} catch (Exception ex) {
+			logger.error(ex.getMessage(), ex);
+			uploadJob.fail(new ResponseObject(ResponseMessage.MSG_ERR_UNKNOWN));
+		} finally {
+			uploadSpoolService.deleteQuietly(csvFile);
+		}
+
+		logger.info("upload job {} {} after {} rows", uploadJob.getJobId(), uploadJob.getState(),
+				uploadJob.getRowsProcessed());
+	}
+
+	// completed jobs are kept for jobTtl so clients can collect the result
+	private void evictExpiredJobs() {
+		Instant now = Instant.now();
+		uploadJobList.values().removeIf(uploadJob -> uploadJob.isExpired(now, jobTtl));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		uploadExecutor.shutdownNow();
+	}
+}
@@ -0,0 +1,241 @@
+package com.nphcswe.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import com.nphcswe.helper.MappedFileInputStream;
+import com.nphcswe.helper.ResponseMessage;
+import com.nphcswe.helper.exception.BadInputException;
+import com.nphcswe.model.UploadResult;
+import com.nphcswe.model.UploadSession;
+
+/**
+ * Resumable uploads: the client creates a session, PUTs numbered chunks with a
+ * SHA-256 checksum and commits once every chunk is in. Verified chunks survive
+ * client retries, only missing or corrupt chunks have to be sent again.
+ */
+@Service
+public class UploadSessionService {
+	private static final Logger logger = LogManager.getLogger();
+
+	public static final String CHECKSUM_HEADER = "X-Chunk-Checksum";
+
+	private final Map<String, UploadSession> uploadSessionList = new ConcurrentHashMap<>();
+
+	@Value("${employee.upload.session.ttl:PT24H}")
+	private Duration sessionTtl;
+
+	@Value("${employee.upload.max-file-size:10MB}")
+	private DataSize maxFileSize;
+
+	@Value("${employee.upload.session.max-chunks:10000}")
+	private int maxChunks;
+
+	@Autowired
+	private UploadSpoolService uploadSpoolService;
+
+	@Autowired
+	private EmployeeService employeeService;
+
+	public UploadSession createSession() {
+		evictExpiredSessions();
+
+		try {
+			UploadSession uploadSession = new UploadSession(UUID.randomUUID().toString(),
+					Files.createTempDirectory("employee-upload-session-"));
+			uploadSessionList.put(uploadSession.getSessionId(), uploadSession);
+			logger.info("upload session {} created", uploadSession.getSessionId());
+			return uploadSession;
+		} catch (IOException ex) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_FILE_READING);
+		}
+	}
+
+	public UploadSession getSession(String sessionId) {
+		evictExpiredSessions();
+
+		UploadSession uploadSession = uploadSessionList.get(sessionId);
+		if (uploadSession == null) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_NO_SUCH_UPLOAD_SESSION);
+		}
+		return uploadSession;
+	}
+
+	// the chunk is spooled and verified before it replaces any earlier copy
+	public UploadSession putChunk(String sessionId, int chunkNumber, String checksum, InputStream body) {
+
+		UploadSession uploadSession = getSession(sessionId);
+
+		if (checksum == null || checksum.trim().isEmpty()) {
+			throw new BadInputException(String.format(ResponseMessage.MSG_ERR_MANDATORY_FIELD, CHECKSUM_HEADER));
+		}
+
+		if (chunkNumber < 0) {
+			throw new BadInputException(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, "chunk number"));
+		}
+
+		if (chunkNumber >= maxChunks) {
+			throw new BadInputException(String.format(ResponseMessage.MSG_ERR_CHUNK_LIMIT, maxChunks));
+		}
+
+		if (uploadSession.isCommitting()) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_UPLOAD_SESSION_COMMITTING);
+		}
+
+		MessageDigest digest = sha256();
+		Path spooledChunk = uploadSpoolService.spool(new DigestInputStream(body, digest));
+
+		try {
+			if (!toHex(digest.digest()).equalsIgnoreCase(checksum.trim())) {
+				throw new BadInputException(String.format(ResponseMessage.MSG_ERR_CHUNK_CHECKSUM, chunkNumber));
+			}
+
+			long chunkSize = Files.size(spooledChunk);
+
+			// checked again under the guard startCommit takes, a commit reading
+			// the chunks never sees one replaced
+			synchronized (uploadSession) {
+				if (uploadSession.isCommitting()) {
+					throw new BadInputException(ResponseMessage.MSG_ERR_UPLOAD_SESSION_COMMITTING);
+				}
+
+				// a chunk sent again replaces its earlier copy
+				long sessionSize = uploadSession.getReceivedBytes() - uploadSession.getChunkSize(chunkNumber)
+						+ chunkSize;
+				if (maxFileSize.toBytes() >= 0 && sessionSize > maxFileSize.toBytes()) {
+					throw new BadInputException(String.format(ResponseMessage.MSG_ERR_FILE_SIZE_LIMIT, maxFileSize));
+				}
+
+				Files.move(spooledChunk, uploadSession.getChunkFile(chunkNumber), StandardCopyOption.REPLACE_EXISTING);
+				uploadSession.chunkReceived(chunkNumber, chunkSize);
+			}
+		} catch (IOException ex) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_FILE_READING);
+		} finally {
+			uploadSpoolService.deleteQuietly(spooledChunk);
+		}
+
+		logger.info("upload session {} chunk {} received", sessionId, chunkNumber);
+		return uploadSession;
+	}
+
+	// validate and save the assembled chunks, the session is kept if the upload
+	// fails so the client can replace chunks and commit again
+	public UploadResult commit(String sessionId, Integer chunkCount) {
+
+		UploadSession uploadSession = getSession(sessionId);
+
+		if (chunkCount != null && chunkCount > maxChunks) {
+			throw new BadInputException(String.format(ResponseMessage.MSG_ERR_CHUNK_LIMIT, maxChunks));
+		}
+
+		if (!uploadSession.startCommit()) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_UPLOAD_SESSION_COMMITTING);
+		}
+
+		try {
+			List<Integer> missingChunks = uploadSession.getMissingChunks(chunkCount);
+			if (!missingChunks.isEmpty()) {
+				throw new BadInputException(String.format(ResponseMessage.MSG_ERR_MISSING_CHUNKS, missingChunks));
+			}
+
+			int count = chunkCount != null ? chunkCount : uploadSession.getReceivedChunks().size();
+			UploadResult uploadResult;
+			try (InputStream csvStream = openChunks(uploadSession.getChunkFiles(count))) {
+				uploadResult = employeeService.uploadAndSaveEmployee(csvStream, rowsProcessed -> {
+				});
+			} catch (IOException | UncheckedIOException ex) {
+				throw new BadInputException(ResponseMessage.MSG_ERR_FILE_READING);
+			}
+
+			uploadSessionList.remove(sessionId);
+			deleteChunks(uploadSession);
+			logger.info("upload session {} committed: {}", sessionId, uploadResult);
+			return uploadResult;
+		} finally {
+			uploadSession.endCommit();
+		}
+	}
+
+	// chunk files are opened one at a time as the reader reaches them
+	private InputStream openChunks(List<Path> chunkFiles) {
+		Iterator<Path> chunkIterator = chunkFiles.iterator();
+
+		return new SequenceInputStream(new Enumeration<InputStream>() {
+
+			@Override
+			public boolean hasMoreElements() {
+				return chunkIterator.hasNext();
+			}
+
+			@Override
+			public InputStream nextElement() {
+				try {
+					return new MappedFileInputStream(chunkIterator.next());
+				} catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			}
+		});
+	}
+
+	private void evictExpiredSessions() {
+		Instant now = Instant.now();
+		uploadSessionList.values().removeIf(uploadSession -> {
+			if (uploadSession.isExpired(now, sessionTtl)) {
+				deleteChunks(uploadSession);
+				return true;
+			}
+			return false;
+		});
+	}
+
+	private void deleteChunks(UploadSession uploadSession) {
+		try (Stream<Path> files = Files.walk(uploadSession.getChunkDirectory())) {
+			files.sorted(Comparator.reverseOrder()).forEach(uploadSpoolService::deleteQuietly);
+		} catch (IOException ex) {
+			logger.warn("unable to delete {}", uploadSession.getChunkDirectory(), ex);
+		}
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,100 @@
+package com.nphcswe.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import com.nphcswe.helper.MappedFileInputStream;
+import com.nphcswe.helper.ResponseMessage;
+import com.nphcswe.helper.exception.BadInputException;
+import com.nphcswe.model.UploadResult;
+
+/**
+ * Spools CSV request bodies to a temp file as they arrive and imports them from
+ * a memory-mapped view of the file. The database transaction only starts once
+ * the whole body has been received.
+ */
+@Service
+public class UploadSpoolService {
+	private static final Logger logger = LogManager.getLogger();
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	@Value("${employee.upload.max-file-size:10MB}")
+	private DataSize maxFileSize;
+
+	@Autowired
+	private EmployeeService employeeService;
+
+	// copy the body to a temp file, a negative max-file-size disables the limit
+	public Path spool(InputStream requestBody) {
+
+		Path csvFile = createTempFile();
+
+		try (OutputStream out = Files.newOutputStream(csvFile)) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long total = 0;
+			int read;
+			while ((read = requestBody.read(buffer)) != -1) {
+				total += read;
+				if (maxFileSize.toBytes() >= 0 && total > maxFileSize.toBytes()) {
+					throw new BadInputException(String.format(ResponseMessage.MSG_ERR_FILE_SIZE_LIMIT, maxFileSize));
+				}
+				out.write(buffer, 0, read);
+			}
+			logger.info("spooled {} bytes to {}", total, csvFile);
+		} catch (IOException ex) {
+			deleteQuietly(csvFile);
+			throw new BadInputException(ResponseMessage.MSG_ERR_FILE_READING);
+		} catch (RuntimeException ex) {
+			deleteQuietly(csvFile);
+			throw ex;
+		}
+
+		return csvFile;
+	}
+
+	public UploadResult uploadAndSaveEmployee(InputStream requestBody) {
+		Path csvFile = spool(requestBody);
+		try {
+			return uploadSpooled(csvFile, rowsProcessed -> {
+			});
+		} finally {
+			deleteQuietly(csvFile);
+		}
+	}
+
+	public UploadResult uploadSpooled(Path csvFile, LongConsumer progressListener) {
+		try (InputStream csvStream = new MappedFileInputStream(csvFile)) {
+			return employeeService.uploadAndSaveEmployee(csvStream, progressListener);
+		} catch (IOException ex) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_FILE_READING);
+		}
+	}
+
+	public Path createTempFile() {
+		try {
+			return Files.createTempFile("employee-upload-", ".csv");
+		} catch (IOException ex) {
+			throw new BadInputException(ResponseMessage.MSG_ERR_FILE_READING);
+		}
+	}
+
+	public void deleteQuietly(Path csvFile) {
+		try {
+			Files.deleteIfExists(csvFile);
+		} catch (IOException ex) {
+			logger.warn("unable to delete {}", csvFile, ex);
+		}
+	}
+}
@@ -2,6 +2,10 @@ DROP TABLE IF EXISTS Employees_Table;
 
 DROP TABLE IF EXISTS Employees_Table;
 
+DROP TABLE IF EXISTS Employee_Audit;
+
+DROP SEQUENCE IF EXISTS EMPLOYEE_AUDIT_SEQ;
+
 
 
 CREATE TABLE Employees_Table (
@@ -14,5 +18,29 @@ CREATE TABLE Employees_Table (
 );
 
 
-ALTER TABLE Employees_Table ADD UNIQUE (LOGIN);
+ALTER TABLE Employees_Table ADD CONSTRAINT UK_EMPLOYEES_LOGIN UNIQUE (LOGIN);
+
+CREATE INDEX IDX_EMPLOYEES_SALARY ON Employees_Table (SALARY, ID);
+
+CREATE INDEX IDX_EMPLOYEES_NAME ON Employees_Table (NAME, ID);
+
+CREATE INDEX IDX_EMPLOYEES_START_DATE ON Employees_Table (STARTDATE, ID);
+
+CREATE SEQUENCE EMPLOYEE_AUDIT_SEQ START WITH 1 INCREMENT BY 500;
+
+CREATE TABLE Employee_Audit (
+    ID BIGINT PRIMARY KEY,
+    EMPLOYEE_ID VARCHAR(255) NOT NULL,
+    TYPE VARCHAR(255) NOT NULL,
+    CHANGED_AT TIMESTAMP NOT NULL,
+    BEFORE_LOGIN VARCHAR(255),
+    BEFORE_NAME VARCHAR(255),
+    BEFORE_SALARY NUMBER(11,2),
+    BEFORE_START_DATE DATE,
+    AFTER_LOGIN VARCHAR(255),
+    AFTER_NAME VARCHAR(255),
+    AFTER_SALARY NUMBER(11,2),
+    AFTER_START_DATE DATE
+);
 
+CREATE INDEX IDX_EMPLOYEE_AUDIT_EMPLOYEE ON Employee_Audit (EMPLOYEE_ID, ID);
@@ -1,10 +1,14 @@
 package com.nphcswe.controller;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
@@ -12,25 +16,58 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nphcswe.helper.Bulkhead;
 import com.nphcswe.helper.ResponseMessage;
 import com.nphcswe.helper.exception.BadInputException;
+import com.nphcswe.model.BatchResult;
 import com.nphcswe.model.Employee;
+import com.nphcswe.model.EmployeeAudit;
+import com.nphcswe.model.EmployeeChangeEvent;
+import com.nphcswe.model.EmployeeImage;
 import com.nphcswe.model.ResponseObject;
+import com.nphcswe.model.SalaryStatistics;
 import com.nphcswe.model.SearchResult;
+import com.nphcswe.model.UploadJob;
+import com.nphcswe.model.UploadResponseObject;
+import com.nphcswe.model.UploadResult;
+import com.nphcswe.model.UploadSession;
+import com.nphcswe.service.BulkheadService;
+import com.nphcswe.service.EmployeeAuditService;
 import com.nphcswe.service.EmployeeServiceImpl;
+import com.nphcswe.service.SalaryStatisticsService;
+import com.nphcswe.service.UploadJobService;
+import com.nphcswe.service.UploadSessionService;
+import com.nphcswe.service.UploadSpoolService;
 
 @WebMvcTest
+@Import(BulkheadService.class)
 public class EmployeeControllerTest {
 
 	@Autowired
@@ -39,9 +76,41 @@ public class EmployeeControllerTest {
 	@MockBean
 	private EmployeeServiceImpl employeeServiceImpl;
 
+	@MockBean
+	private UploadJobService uploadJobService;
+
+	@MockBean
+	private UploadSpoolService uploadSpoolService;
+
+	@MockBean
+	private UploadSessionService uploadSessionService;
+
+	@MockBean
+	private SalaryStatisticsService salaryStatisticsService;
+
+	@MockBean
+	private EmployeeAuditService employeeAuditService;
+
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	@Autowired
+	private BulkheadService bulkheadService;
+
+	// uploads and searches answer on an async dispatch once their pool has run them
+	private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+		MvcResult mvcResult = this.mockMvc.perform(requestBuilder).andExpect(request().asyncStarted()).andReturn();
+		return this.mockMvc.perform(asyncDispatch(mvcResult));
+	}
+
+	// a pool thread is only counted free once it has handed back its last task
+	private static void awaitPool(Bulkhead bulkhead, int active, int queued) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while ((bulkhead.getActive() != active || bulkhead.getQueued() != queued) && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+	}
+
 	/************ get one user ***************/
 	@Test
 	public void getEmployeeSuccess() throws Exception {
@@ -54,6 +123,62 @@ public class EmployeeControllerTest {
 				.andExpect(content().string(containsString(objectMapper.writeValueAsString(employee))));
 	}
 
+	@Test
+	public void getEmployeeNotModified() throws Exception {
+
+		Employee employee = new Employee();
+		employee.setId("e0001");
+		employee.setName("Harry Potter");
+
+		when(employeeServiceImpl.getEmployee("e0001")).thenReturn(employee);
+
+		String eTag = this.mockMvc.perform(get("/users/e0001")).andExpect(status().isOk()).andReturn().getResponse()
+				.getHeader(HttpHeaders.ETAG);
+
+		this.mockMvc.perform(get("/users/e0001").header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(status().isNotModified()).andExpect(content().string(""));
+
+		employee.setName("Ron Weasley");
+
+		this.mockMvc.perform(get("/users/e0001").header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(status().isOk()).andExpect(content().string(containsString("Ron Weasley")));
+	}
+
+	@Test
+	public void getSalaryStatisticsSuccess() throws Exception {
+
+		Employee employee = new Employee();
+		employee.setSalary(1000.0);
+		employee.setstartDate(new Date(0));
+
+		SalaryStatistics salaryStatistics = new SalaryStatistics();
+		salaryStatistics.add(employee);
+
+		when(salaryStatisticsService.getStatistics()).thenReturn(salaryStatistics);
+
+		this.mockMvc.perform(get("/users/stats")).andExpect(status().isOk())
+				.andExpect(content().string(objectMapper.writeValueAsString(salaryStatistics)))
+				.andExpect(content().string(containsString("\"overall\":{\"count\":1,\"sum\":1000.0")));
+	}
+
+	@Test
+	public void getEmployeeHistorySuccess() throws Exception {
+
+		Employee employee = new Employee();
+		employee.setLogin("hpotter");
+		employee.setName("Harry Potter");
+		employee.setSalary(1000.0);
+		employee.setstartDate(new Date(0));
+
+		when(employeeAuditService.getHistory("e0001")).thenReturn(
+				List.of(new EmployeeAudit(EmployeeChangeEvent.Type.CREATED, "e0001", null, EmployeeImage.of(employee))));
+
+		this.mockMvc.perform(get("/users/e0001/history")).andExpect(status().isOk())
+				.andExpect(content().string(containsString("\"type\":\"CREATED\"")))
+				.andExpect(content().string(containsString("\"after\":{\"login\":\"hpotter\"")))
+				.andExpect(content().string(containsString("\"startDate\":\"1970-01-01\"")));
+	}
+
 	@Test
 	public void GetEmployeeFail() throws Exception {
 
@@ -134,17 +259,181 @@ public class EmployeeControllerTest {
 						.writeValueAsString(new ResponseObject(ResponseMessage.MSG_ERR_NO_SUCH_EMPLOYEE)))));
 	}
 
+	/************ batch ***************/
+	@Test
+	public void batchCreateEmployeeSuccess() throws Exception {
+
+		BatchResult batchResult = new BatchResult(2);
+		batchResult.success(0, "e0001", HttpStatus.CREATED, ResponseMessage.MSG_SUC_CREATED);
+		batchResult.failure(1, "e0002", ResponseMessage.MSG_ERR_EMPLOYEE_EXIST);
+
+		when(employeeServiceImpl.saveEmployeeBatch(any())).thenReturn(batchResult);
+
+		this.mockMvc
+				.perform(post("/users/batch").contentType(MediaType.APPLICATION_JSON_VALUE)
+						.content(objectMapper.writeValueAsString(List.of(new Employee(), new Employee()))))
+				.andExpect(status().isOk()).andExpect(content().string(objectMapper.writeValueAsString(batchResult)))
+				.andExpect(content().string(containsString("\"succeeded\":1,\"failed\":1")));
+	}
+
+	@Test
+	public void batchUpdateEmployeeSuccess() throws Exception {
+
+		BatchResult batchResult = new BatchResult(1);
+		batchResult.success(0, "e0001", HttpStatus.OK, ResponseMessage.MSG_SUC_UPDATED);
+
+		when(employeeServiceImpl.updateEmployeeBatch(any())).thenReturn(batchResult);
+
+		this.mockMvc
+				.perform(patch("/users/batch").contentType(MediaType.APPLICATION_JSON_VALUE)
+						.content(objectMapper.writeValueAsString(List.of(new Employee()))))
+				.andExpect(status().isOk()).andExpect(content().string(objectMapper.writeValueAsString(batchResult)));
+	}
+
+	@Test
+	public void batchDeleteEmployeeSuccess() throws Exception {
+
+		BatchResult batchResult = new BatchResult(1);
+		batchResult.success(0, "e0001", HttpStatus.OK, ResponseMessage.MSG_SUC_DELETED);
+
+		when(employeeServiceImpl.deleteEmployeeBatch(List.of("e0001"))).thenReturn(batchResult);
+
+		this.mockMvc
+				.perform(delete("/users/batch").contentType(MediaType.APPLICATION_JSON_VALUE)
+						.content(objectMapper.writeValueAsString(List.of("e0001"))))
+				.andExpect(status().isOk()).andExpect(content().string(objectMapper.writeValueAsString(batchResult)));
+	}
+
+	@Test
+	public void batchCreateEmployeeFail() throws Exception {
+
+		doThrow(new BadInputException(String.format(ResponseMessage.MSG_ERR_BATCH_SIZE_LIMIT, 1000)))
+				.when(employeeServiceImpl).saveEmployeeBatch(any());
+
+		this.mockMvc
+				.perform(post("/users/batch").contentType(MediaType.APPLICATION_JSON_VALUE)
+						.content(objectMapper.writeValueAsString(List.of(new Employee()))))
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string(containsString(objectMapper.writeValueAsString(
+						new ResponseObject(String.format(ResponseMessage.MSG_ERR_BATCH_SIZE_LIMIT, 1000))))));
+	}
+
 	/************ fetch all users ***************/
 	@Test
 	public void fetchAllEmployeeSuccess() throws Exception {
 
-		when(employeeServiceImpl.searchEmployeeList(anyMap())).thenReturn(null);
+		when(employeeServiceImpl.searchEmployeeList(anyMap())).thenReturn(new SearchResult(null));
 
-		this.mockMvc.perform(get("/users/")).andExpect(status().isOk())
+		performAsync(get("/users/")).andExpect(status().isOk())
 				.andExpect(content().string(containsString(objectMapper.writeValueAsString(new SearchResult(null)))));
 
 	}
 
+	@Test
+	public void fetchEmployeePageSuccess() throws Exception {
+
+		when(employeeServiceImpl.searchEmployeeList(anyMap())).thenReturn(new SearchResult(null, "ZTAwMDI"));
+
+		performAsync(get("/users/").param("limit", "2")).andExpect(status().isOk())
+				.andExpect(content().string(containsString("\"nextCursor\":\"ZTAwMDI\"")));
+
+	}
+
+	@Test
+	public void fetchEmployeeFieldsSuccess() throws Exception {
+
+		Employee employee = new Employee();
+		employee.setLogin("hpotter");
+
+		when(employeeServiceImpl.searchEmployeeList(anyMap())).thenReturn(new SearchResult(List.of(employee)));
+
+		performAsync(get("/users/").param("fields", "login")).andExpect(status().isOk())
+				.andExpect(content().string("{\"results\":[{\"login\":\"hpotter\"}]}"));
+	}
+
+	@Test
+	public void fetchEmployeeListKeepsNullFields() throws Exception {
+
+		Employee employee = new Employee();
+		employee.setLogin("hpotter");
+
+		when(employeeServiceImpl.searchEmployeeList(anyMap())).thenReturn(new SearchResult(List.of(employee)));
+
+		performAsync(get("/users/")).andExpect(status().isOk())
+				.andExpect(content().string("{\"results\":[" + objectMapper.writeValueAsString(employee) + "]}"))
+				.andExpect(content().string(containsString("\"name\":null")));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void streamEmployeeListSuccess() throws Exception {
+
+		Employee first = new Employee();
+		first.setId("e0001");
+		Employee second = new Employee();
+		second.setId("e0002");
+
+		doAnswer(invocation -> {
+			Consumer<Employee> employeeConsumer = invocation.getArgument(1);
+			employeeConsumer.accept(first);
+			employeeConsumer.accept(second);
+			return null;
+		}).when(employeeServiceImpl).streamEmployeeList(anyMap(), any(Consumer.class));
+
+		MvcResult mvcResult = this.mockMvc.perform(get("/users").accept(MediaType.APPLICATION_NDJSON))
+				.andExpect(request().asyncStarted()).andReturn();
+
+		this.mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+				.andExpect(content().string(objectMapper.writeValueAsString(first) + "\n"
+						+ objectMapper.writeValueAsString(second)));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void saturatedSearchPoolAnswersServiceUnavailableForStreams() throws Exception {
+
+		CountDownLatch release = new CountDownLatch(1);
+		doAnswer(invocation -> {
+			release.await(10, TimeUnit.SECONDS);
+			return null;
+		}).when(employeeServiceImpl).streamEmployeeList(anyMap(), any(Consumer.class));
+
+		// eight running and 64 queued streams fill the default search pool
+		List<MvcResult> accepted = new ArrayList<>();
+		try {
+			awaitPool(bulkheadService.getSearchBulkhead(), 0, 0);
+			for (int i = 0; i < 72; i++) {
+				accepted.add(this.mockMvc.perform(get("/users").accept(MediaType.APPLICATION_NDJSON))
+						.andExpect(request().asyncStarted()).andReturn());
+			}
+			awaitPool(bulkheadService.getSearchBulkhead(), 8, 64);
+
+			this.mockMvc.perform(get("/users").accept(MediaType.APPLICATION_NDJSON))
+					.andExpect(status().isServiceUnavailable()).andExpect(header().string(HttpHeaders.RETRY_AFTER, "5"))
+					.andExpect(content().string(objectMapper.writeValueAsString(
+							new ResponseObject(String.format(ResponseMessage.MSG_ERR_SERVER_BUSY, "search")))));
+		} finally {
+			release.countDown();
+		}
+
+		for (MvcResult mvcResult : accepted) {
+			this.mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isOk());
+		}
+	}
+
+	@Test
+	public void streamEmployeeListFail() throws Exception {
+
+		String message = String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, "limit");
+
+		doThrow(new BadInputException(message)).when(employeeServiceImpl).validateSearchCriteria(anyMap());
+
+		this.mockMvc.perform(get("/users").param("limit", "0").accept(MediaType.APPLICATION_NDJSON))
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string(containsString(objectMapper.writeValueAsString(new ResponseObject(message)))));
+	}
+
 	/************ CSV Unit Test ***************/
 	@Test
 	public void csvUploadUserSuccessNoData() throws Exception {
@@ -152,11 +441,14 @@ public class EmployeeControllerTest {
 		MockMultipartFile multipartFile = new MockMultipartFile("file", "testData.csv", MediaType.TEXT_PLAIN_VALUE,
 				"testing".getBytes());
 
-		when(employeeServiceImpl.uploadAndSaveEmployee(multipartFile)).thenReturn(false);
+		UploadResult uploadResult = new UploadResult(0, 0, 3);
+
+		when(employeeServiceImpl.uploadAndSaveEmployee(multipartFile)).thenReturn(uploadResult);
 
-		this.mockMvc.perform(multipart("/users/upload").file(multipartFile)).andExpect(status().isOk())
+		performAsync(multipart("/users/upload").file(multipartFile)).andExpect(status().isOk())
 				.andExpect(content().string(containsString(
-						objectMapper.writeValueAsString(new ResponseObject(ResponseMessage.MSG_SUC_NO_CREATE)))));
+						objectMapper.writeValueAsString(new UploadResponseObject(uploadResult)))))
+				.andExpect(content().string(containsString(ResponseMessage.MSG_SUC_NO_CREATE)));
 
 	}
 
@@ -166,11 +458,15 @@ public class EmployeeControllerTest {
 		MockMultipartFile multipartFile = new MockMultipartFile("file", "testData.csv", MediaType.TEXT_PLAIN_VALUE,
 				"testing".getBytes());
 
-		when(employeeServiceImpl.uploadAndSaveEmployee(multipartFile)).thenReturn(true);
+		UploadResult uploadResult = new UploadResult(1, 2, 3);
 
-		this.mockMvc.perform(multipart("/users/upload").file(multipartFile)).andExpect(status().isCreated())
+		when(employeeServiceImpl.uploadAndSaveEmployee(multipartFile)).thenReturn(uploadResult);
+
+		performAsync(multipart("/users/upload").file(multipartFile)).andExpect(status().isCreated())
 				.andExpect(content().string(containsString(
-						objectMapper.writeValueAsString(new ResponseObject(ResponseMessage.MSG_SUC_CREATE_UPDATE)))));
+						objectMapper.writeValueAsString(new UploadResponseObject(uploadResult)))))
+				.andExpect(content().string(containsString(ResponseMessage.MSG_SUC_CREATE_UPDATE)))
+				.andExpect(content().string(containsString("\"created\":1,\"updated\":2,\"unchanged\":3")));
 
 	}
 
@@ -183,10 +479,154 @@ public class EmployeeControllerTest {
 		doThrow(new BadInputException(ResponseMessage.MSG_ERR_CSV_COLUMN_FORMAT)).when(employeeServiceImpl)
 				.uploadAndSaveEmployee(multipartFile);
 
-		this.mockMvc.perform(multipart("/users/upload").file(multipartFile)).andExpect(status().isBadRequest())
+		performAsync(multipart("/users/upload").file(multipartFile)).andExpect(status().isBadRequest())
 				.andExpect(content().string(containsString(objectMapper
 						.writeValueAsString(new ResponseObject(ResponseMessage.MSG_ERR_CSV_COLUMN_FORMAT)))));
 
 	}
 
-}
+	@Test
+	public void csvStreamUploadSuccess() throws Exception {
+
+		UploadResult uploadResult = new UploadResult(2, 0, 0);
+
+		when(uploadSpoolService.uploadAndSaveEmployee(any(InputStream.class))).thenReturn(uploadResult);
+
+		performAsync(post("/users/upload").contentType("text/csv").content("testing"))
+				.andExpect(status().isCreated()).andExpect(content()
+						.string(containsString(objectMapper.writeValueAsString(new UploadResponseObject(uploadResult)))));
+	}
+
+	@Test
+	public void csvStreamUploadFail() throws Exception {
+
+		String message = String.format(ResponseMessage.MSG_ERR_FILE_SIZE_LIMIT, "10MB");
+
+		doThrow(new BadInputException(message)).when(uploadSpoolService).uploadAndSaveEmployee(any(InputStream.class));
+
+		performAsync(post("/users/upload").contentType("text/csv").content("testing"))
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string(containsString(objectMapper.writeValueAsString(new ResponseObject(message)))));
+	}
+
+	@Test
+	public void saturatedUploadPoolAnswersServiceUnavailable() throws Exception {
+
+		CountDownLatch release = new CountDownLatch(1);
+		when(uploadSpoolService.uploadAndSaveEmployee(any(InputStream.class))).thenAnswer(invocation -> {
+			release.await(10, TimeUnit.SECONDS);
+			return new UploadResult(1, 0, 0);
+		});
+
+		Employee employee = new Employee();
+		employee.setId("e0001");
+		when(employeeServiceImpl.getEmployee("e0001")).thenReturn(employee);
+		when(employeeServiceImpl.searchEmployeeList(anyMap())).thenReturn(new SearchResult(List.of(employee)));
+
+		// two running and two queued uploads fill the default upload pool
+		List<MvcResult> accepted = new ArrayList<>();
+		try {
+			awaitPool(bulkheadService.getUploadBulkhead(), 0, 0);
+			for (int i = 0; i < 4; i++) {
+				accepted.add(this.mockMvc.perform(post("/users/upload").contentType("text/csv").content("testing"))
+						.andExpect(request().asyncStarted()).andReturn());
+				awaitPool(bulkheadService.getUploadBulkhead(), Math.min(i + 1, 2), Math.max(i - 1, 0));
+			}
+
+			this.mockMvc.perform(post("/users/upload").contentType("text/csv").content("testing"))
+					.andExpect(status().isServiceUnavailable()).andExpect(header().string(HttpHeaders.RETRY_AFTER, "5"))
+					.andExpect(content().string(objectMapper.writeValueAsString(
+							new ResponseObject(String.format(ResponseMessage.MSG_ERR_SERVER_BUSY, "upload")))));
+
+			// reads and searches do not wait for the upload pool
+			this.mockMvc.perform(get("/users/e0001")).andExpect(status().isOk());
+			performAsync(get("/users/")).andExpect(status().isOk());
+		} finally {
+			release.countDown();
+		}
+
+		for (MvcResult mvcResult : accepted) {
+			this.mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isCreated());
+		}
+	}
+
+	/************ async CSV upload ***************/
+	@Test
+	public void csvUploadAsyncAccepted() throws Exception {
+
+		MockMultipartFile multipartFile = new MockMultipartFile("file", "testData.csv", MediaType.TEXT_PLAIN_VALUE,
+				"testing".getBytes());
+
+		UploadJob uploadJob = new UploadJob("job-1");
+
+		when(uploadJobService.submit(multipartFile)).thenReturn(uploadJob);
+
+		performAsync(multipart("/users/upload").file(multipartFile).param("async", "true"))
+				.andExpect(status().isAccepted()).andExpect(content().string(containsString("\"jobId\":\"job-1\"")))
+				.andExpect(content().string(containsString("\"state\":\"QUEUED\"")));
+	}
+
+	@Test
+	public void getUploadJobSuccess() throws Exception {
+
+		UploadJob uploadJob = new UploadJob("job-1");
+		uploadJob.start();
+		uploadJob.setRowsProcessed(10);
+		uploadJob.complete(new ResponseObject(ResponseMessage.MSG_SUC_CREATE_UPDATE));
+
+		when(uploadJobService.getJob("job-1")).thenReturn(uploadJob);
+
+		this.mockMvc.perform(get("/users/upload/job-1")).andExpect(status().isOk())
+				.andExpect(content().string(containsString("\"state\":\"COMPLETED\"")))
+				.andExpect(content().string(containsString("\"rowsProcessed\":10")))
+				.andExpect(content().string(containsString(
+						objectMapper.writeValueAsString(new ResponseObject(ResponseMessage.MSG_SUC_CREATE_UPDATE)))));
+	}
+
+	@Test
+	public void getUploadJobFail() throws Exception {
+
+		doThrow(new BadInputException(ResponseMessage.MSG_ERR_NO_SUCH_UPLOAD_JOB)).when(uploadJobService)
+				.getJob("job-1");
+
+		this.mockMvc.perform(get("/users/upload/job-1")).andExpect(status().isBadRequest())
+				.andExpect(content().string(containsString(objectMapper
+						.writeValueAsString(new ResponseObject(ResponseMessage.MSG_ERR_NO_SUCH_UPLOAD_JOB)))));
+	}
+
+	/************ resumable CSV upload ***************/
+	@Test
+	public void createUploadSessionSuccess() throws Exception {
+
+		when(uploadSessionService.createSession()).thenReturn(new UploadSession("session-1", null));
+
+		this.mockMvc.perform(post("/users/upload/sessions")).andExpect(status().isCreated())
+				.andExpect(content().string(containsString("\"sessionId\":\"session-1\"")));
+	}
+
+	@Test
+	public void putUploadChunkFail() throws Exception {
+
+		String message = String.format(ResponseMessage.MSG_ERR_CHUNK_CHECKSUM, 0);
+
+		doThrow(new BadInputException(message)).when(uploadSessionService).putChunk(eq("session-1"), eq(0),
+				eq("abc"), any(InputStream.class));
+
+		performAsync(put("/users/upload/sessions/session-1/chunks/0").header(UploadSessionService.CHECKSUM_HEADER, "abc")
+				.contentType(MediaType.APPLICATION_OCTET_STREAM).content("testing")).andExpect(status().isBadRequest())
+				.andExpect(content().string(containsString(objectMapper.writeValueAsString(new ResponseObject(message)))));
+	}
+
+	@Test
+	public void commitUploadSessionSuccess() throws Exception {
+
+		UploadResult uploadResult = new UploadResult(1, 0, 0);
+
+		when(uploadSessionService.commit("session-1", 2)).thenReturn(uploadResult);
+
+		performAsync(post("/users/upload/sessions/session-1/commit").param("chunkCount", "2"))
+				.andExpect(status().isCreated()).andExpect(content()
+						.string(containsString(objectMapper.writeValueAsString(new UploadResponseObject(uploadResult)))));
+	}
+
+}
\ No newline at end of file
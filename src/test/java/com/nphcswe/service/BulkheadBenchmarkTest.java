@@ -0,0 +1,139 @@
+package com.nphcswe.service;
+
+import static com.nphcswe.service.EmployeeFixtures.generateCsv;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import com.nphcswe.model.Employee;
+import com.nphcswe.repository.EmployeeRepository;
+
+/**
+ * GET /users/{id} latency while uploads keep the upload pool saturated, with
+ * fewer container threads than concurrent uploads. Run with
+ * mvn test -Dtest=BulkheadBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"server.tomcat.threads.max=8", "spring.jpa.show-sql=false",
+		"logging.level.org.hibernate.type.descriptor.sql.BasicBinder=info", "logging.level.com.nphcswe=warn" })
+public class BulkheadBenchmarkTest {
+	private static final Logger logger = LogManager.getLogger();
+
+	private static final int UPLOADERS = 16;
+
+	private static final int READS = 2000;
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	private final HttpClient httpClient = HttpClient.newHttpClient();
+
+	@AfterEach
+	public void cleanUp() {
+		employeeRepository.deleteAllInBatch();
+	}
+
+	// read latencies in microseconds, sorted
+	private List<Long> timeReads() throws Exception {
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/users/e0001")).build();
+
+		List<Long> latencies = new ArrayList<>(READS);
+		for (int i = 0; i < READS; i++) {
+			long start = System.nanoTime();
+			HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+			latencies.add((System.nanoTime() - start) / 1000);
+			assertEquals(200, response.statusCode());
+		}
+		Collections.sort(latencies);
+		return latencies;
+	}
+
+	private static long percentile(List<Long> sorted, double percentile) {
+		return sorted.get((int) Math.ceil(percentile / 100 * sorted.size()) - 1);
+	}
+
+	@Test
+	public void readLatencyUnderUploadLoad() throws Exception {
+
+		Employee employee = new Employee();
+		employee.setId("e0001");
+		employee.setLogin("hpotter");
+		employee.setName("Harry Potter");
+		employee.setSalary(1000.0);
+		employee.setstartDate(Calendar.getInstance().getTime());
+		employeeRepository.save(employee);
+
+		// warm up, then the idle baseline
+		timeReads();
+		List<Long> idle = timeReads();
+
+		byte[] csv = generateCsv("u", "ulogin", 20000);
+		HttpRequest upload = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/users/upload"))
+				.header("Content-Type", "text/csv").POST(HttpRequest.BodyPublishers.ofByteArray(csv)).build();
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		Map<Integer, LongAdder> uploadStatus = new ConcurrentHashMap<>();
+		ExecutorService uploaders = Executors.newFixedThreadPool(UPLOADERS);
+		for (int i = 0; i < UPLOADERS; i++) {
+			uploaders.execute(() -> {
+				while (running.get()) {
+					try {
+						HttpResponse<Void> response = httpClient.send(upload, HttpResponse.BodyHandlers.discarding());
+						uploadStatus.computeIfAbsent(response.statusCode(), key -> new LongAdder()).increment();
+
+						// well behaved clients wait as told
+						if (response.statusCode() == 503) {
+							Thread.sleep(Long.parseLong(response.headers().firstValue("Retry-After").orElse("1")) * 1000);
+						}
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+						return;
+					} catch (Exception ex) {
+						uploadStatus.computeIfAbsent(-1, key -> new LongAdder()).increment();
+					}
+				}
+			});
+		}
+
+		List<Long> loaded;
+		try {
+			Thread.sleep(2000);
+			loaded = timeReads();
+		} finally {
+			running.set(false);
+			uploaders.shutdownNow();
+			uploaders.awaitTermination(2, TimeUnit.MINUTES);
+		}
+
+		logger.warn("reads idle p50 {} us, p99 {} us; under {} uploaders p50 {} us, p99 {} us; upload status {}",
+				percentile(idle, 50), percentile(idle, 99), UPLOADERS, percentile(loaded, 50),
+				percentile(loaded, 99), uploadStatus);
+	}
+}
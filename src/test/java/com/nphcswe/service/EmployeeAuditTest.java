@@ -0,0 +1,154 @@
+package com.nphcswe.service;
+
+import static com.nphcswe.service.EmployeeFixtures.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.nphcswe.helper.exception.BadInputException;
+import com.nphcswe.model.EmployeeAudit;
+import com.nphcswe.model.EmployeeChangeEvent;
+import com.nphcswe.model.EmployeeImage;
+import com.nphcswe.model.SalaryStatistics;
+import com.nphcswe.repository.EmployeeAuditRepository;
+import com.nphcswe.repository.EmployeeRepository;
+
+@SpringBootTest
+public class EmployeeAuditTest {
+
+	@Autowired
+	private EmployeeService employeeService;
+
+	@Autowired
+	private EmployeeAuditService employeeAuditService;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	@Autowired
+	private EmployeeAuditRepository employeeAuditRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	// other test contexts share the database and write their audit entries in
+	// the background, the ids used here are not used by other tests
+	@BeforeEach
+	public void setUp() {
+		employeeAuditService.writeQueued();
+		employeeAuditRepository.deleteAll();
+	}
+
+	@AfterEach
+	public void cleanUp() {
+		employeeRepository.deleteAll();
+	}
+
+	private static List<EmployeeChangeEvent.Type> types(List<EmployeeAudit> history) {
+		return history.stream().map(EmployeeAudit::getType).collect(Collectors.toList());
+	}
+
+	@Test
+	public void historyHasEveryCommittedChange() {
+
+		employeeService.saveEmployee(employee("a0001", "login1", 1000));
+		employeeService.updateEmployee(employee("a0001", "login2", 1500));
+
+		String csv = "id,login,name,salary,startDate\na0001,login3,Severus Snape,2000.0,2001-11-16\n"
+				+ "a0002,login4,Harry Potter,3000.0,2001-11-16\n";
+		employeeService.uploadAndSaveEmployee(
+				new MockMultipartFile("file", "data.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8)));
+
+		employeeService.deleteEmployee("a0001");
+
+		List<EmployeeAudit> history = employeeAuditService.getHistory("a0001");
+		assertEquals(List.of(EmployeeChangeEvent.Type.CREATED, EmployeeChangeEvent.Type.UPDATED,
+				EmployeeChangeEvent.Type.UPDATED, EmployeeChangeEvent.Type.DELETED), types(history));
+
+		assertNull(history.get(0).getBefore());
+		assertEquals("login1", history.get(0).getAfter().getLogin());
+		assertEquals(1000.0, history.get(1).getBefore().getSalary());
+		assertEquals(1500.0, history.get(1).getAfter().getSalary());
+		assertEquals("login2", history.get(2).getBefore().getLogin());
+		assertEquals("Severus Snape", history.get(2).getAfter().getName());
+		assertEquals(2000.0, history.get(3).getBefore().getSalary());
+		assertNull(history.get(3).getAfter());
+
+		assertEquals(List.of(EmployeeChangeEvent.Type.CREATED), types(employeeAuditService.getHistory("a0002")));
+	}
+
+	// more rows than an upload chunk, the entries of each chunk are written
+	// with the upload and rolled back with it
+	private static String csv(int rows, int invalidRow) {
+		StringBuilder csv = new StringBuilder("id,login,name,salary,startDate\n");
+		for (int i = 0; i < rows; i++) {
+			csv.append(String.format("b%04d,blogin%d,Name %d,%s,2001-11-16\n", i, i, i,
+					i == invalidRow ? "invalid" : "1000.0"));
+		}
+		return csv.toString();
+	}
+
+	@Test
+	public void uploadAuditIsWrittenWithTheUpload() {
+
+		assertThrows(BadInputException.class, () -> employeeService.uploadAndSaveEmployee(new MockMultipartFile("file",
+				"data.csv", "text/csv", csv(1500, 1400).getBytes(StandardCharsets.UTF_8))));
+		assertEquals(List.of(), types(employeeAuditService.getHistory("b0000")));
+
+		employeeService.uploadAndSaveEmployee(new MockMultipartFile("file", "data.csv", "text/csv",
+				csv(1500, -1).getBytes(StandardCharsets.UTF_8)));
+		assertEquals(List.of(EmployeeChangeEvent.Type.CREATED), types(employeeAuditService.getHistory("b0000")));
+		assertEquals(List.of(EmployeeChangeEvent.Type.CREATED), types(employeeAuditService.getHistory("b1499")));
+	}
+
+	@Test
+	public void failedWritesAreNotAudited() {
+
+		employeeService.saveEmployee(employee("a0001", "login1", 1000));
+		employeeService.saveEmployee(employee("a0002", "login2", 2000));
+
+		// duplicate id on create and duplicate login on update are rolled back
+		assertThrows(BadInputException.class, () -> employeeService.saveEmployee(employee("a0001", "login3", 1000)));
+		assertThrows(BadInputException.class,
+				() -> employeeService.updateEmployee(employee("a0001", "login2", 1000)));
+
+		assertEquals(List.of(EmployeeChangeEvent.Type.CREATED), types(employeeAuditService.getHistory("a0001")));
+	}
+
+	@Test
+	public void dropPolicyCountsDroppedEntries() {
+
+		EmployeeAuditService auditService = new EmployeeAuditService(2, EmployeeAuditService.Overflow.DROP, 500,
+				Duration.ofHours(1));
+		ReflectionTestUtils.setField(auditService, "employeeAuditRepository", employeeAuditRepository);
+		ReflectionTestUtils.setField(auditService, "transactionManager", transactionManager);
+
+		EmployeeImage after = EmployeeImage.of(employee("a0009", "login9", 1000));
+		auditService.onEmployeeChange(new EmployeeChangeEvent(EmployeeChangeEvent.Type.UPLOADED, null,
+				new SalaryStatistics(),
+				List.of(new EmployeeAudit(EmployeeChangeEvent.Type.CREATED, "a0009", null, after),
+						new EmployeeAudit(EmployeeChangeEvent.Type.UPDATED, "a0009", after, after),
+						new EmployeeAudit(EmployeeChangeEvent.Type.DELETED, "a0009", after, null))));
+
+		assertEquals(1, auditService.getDropped());
+
+		// queued entries are written on shutdown
+		auditService.shutdown();
+		assertEquals(List.of(EmployeeChangeEvent.Type.CREATED, EmployeeChangeEvent.Type.UPDATED),
+				types(employeeAuditRepository.findByEmployeeIdOrderByChangedAtAscIdAsc("a0009")));
+	}
+}
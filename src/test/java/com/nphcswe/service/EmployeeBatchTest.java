@@ -0,0 +1,148 @@
+package com.nphcswe.service;
+
+import static com.nphcswe.service.EmployeeFixtures.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.nphcswe.helper.ResponseMessage;
+import com.nphcswe.helper.exception.BadInputException;
+import com.nphcswe.model.BatchItemResult;
+import com.nphcswe.model.BatchResult;
+import com.nphcswe.model.Employee;
+import com.nphcswe.repository.EmployeeRepository;
+import com.nphcswe.service.EmployeeSearchTest.SqlCapture;
+
+@SpringBootTest(properties = {
+		"spring.jpa.properties.hibernate.session_factory.statement_inspector=com.nphcswe.service.EmployeeSearchTest$SqlCapture",
+		"employee.batch.max-size=10" })
+public class EmployeeBatchTest {
+
+	@Autowired
+	private EmployeeService employeeService;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	@BeforeEach
+	public void setUp() {
+		employeeRepository.save(employee("e0001", "login1", 1000));
+		SqlCapture.statements.clear();
+	}
+
+	@AfterEach
+	public void cleanUp() {
+		employeeRepository.deleteAll();
+	}
+
+	private static List<String> messages(BatchResult batchResult) {
+		return batchResult.getResults().stream().map(BatchItemResult::getMessage).collect(Collectors.toList());
+	}
+
+	private long statementCount(String prefix) {
+		return SqlCapture.statements.stream().filter(sql -> sql.startsWith(prefix)).count();
+	}
+
+	@Test
+	public void batchCreateReportsEachItem() {
+
+		Employee invalid = employee("e0005", "login5", -1);
+
+		BatchResult batchResult = employeeService.saveEmployeeBatch(Arrays.asList(employee("e0002", "login2", 2000),
+				employee("e0001", "login9", 1000), employee("e0003", "login1", 1000), invalid,
+				employee("e0002", "login6", 1000), employee("e0004", "login4", 4000), null));
+
+		assertEquals(List.of(ResponseMessage.MSG_SUC_CREATED, ResponseMessage.MSG_ERR_EMPLOYEE_EXIST,
+				ResponseMessage.MSG_ERR_NOT_UNIQUE_EMPLOYEE_LOGIN, "Invalid Salary",
+				String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_IDS, "e0002"), ResponseMessage.MSG_SUC_CREATED,
+				ResponseMessage.MSG_ERR_REQUEST_INVALID), messages(batchResult));
+		assertEquals(201, batchResult.getResults().get(0).getStatus());
+		assertEquals(400, batchResult.getResults().get(1).getStatus());
+		assertEquals(2, batchResult.getSucceeded());
+		assertEquals(5, batchResult.getFailed());
+
+		// one query for the ids, one for the logins and one batched insert
+		assertEquals(2, statementCount("select"), SqlCapture.statements.toString());
+		assertEquals(1, statementCount("insert"), SqlCapture.statements.toString());
+
+		assertEquals(3, employeeRepository.count());
+	}
+
+	@Test
+	public void batchUpdateAndDelete() {
+
+		employeeService.saveEmployeeBatch(List.of(employee("e0002", "login2", 2000), employee("e0003", "login3", 3000)));
+		SqlCapture.statements.clear();
+
+		BatchResult batchResult = employeeService.updateEmployeeBatch(List.of(employee("e0001", "login7", 1100),
+				employee("e0002", "login3", 2200), employee("e0003", "login8", 3300), employee("e0009", "login9", 1)));
+
+		assertEquals(List.of(ResponseMessage.MSG_SUC_UPDATED, ResponseMessage.MSG_ERR_NOT_UNIQUE_EMPLOYEE_LOGIN,
+				ResponseMessage.MSG_SUC_UPDATED, ResponseMessage.MSG_ERR_NO_SUCH_EMPLOYEE), messages(batchResult));
+
+		// rows and logins read once, one batched update
+		assertEquals(2, statementCount("select"), SqlCapture.statements.toString());
+		assertEquals(1, statementCount("update"), SqlCapture.statements.toString());
+
+		assertEquals(1100.0, employeeRepository.findById("e0001").get().getSalary());
+		assertEquals("login2", employeeRepository.findById("e0002").get().getLogin());
+		assertEquals("login8", employeeRepository.findById("e0003").get().getLogin());
+
+		SqlCapture.statements.clear();
+		batchResult = employeeService.deleteEmployeeBatch(Arrays.asList("e0001", "e0009", "e0003", "e0001", ""));
+
+		assertEquals(List.of(ResponseMessage.MSG_SUC_DELETED, ResponseMessage.MSG_ERR_NO_SUCH_EMPLOYEE,
+				ResponseMessage.MSG_SUC_DELETED, String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_IDS, "e0001"),
+				String.format(ResponseMessage.MSG_ERR_MANDATORY_FIELD, "ID")), messages(batchResult));
+		assertEquals(1, statementCount("delete"), SqlCapture.statements.toString());
+		assertEquals(List.of("e0002"), employeeRepository.findAll().stream().map(Employee::getId)
+				.collect(Collectors.toList()));
+	}
+
+	@Test
+	public void batchDuplicatesMatchExactly() {
+
+		// keys differing in case are different rows, as for POST /users
+		BatchResult batchResult = employeeService.saveEmployeeBatch(List.of(employee("e0002", "login2", 2000),
+				employee("E0002", "login3", 2000), employee("e0004", "LOGIN2", 2000), employee("e0002", "login5", 5000),
+				employee("e0006", "login3", 6000)));
+
+		assertEquals(List.of(ResponseMessage.MSG_SUC_CREATED, ResponseMessage.MSG_SUC_CREATED,
+				ResponseMessage.MSG_SUC_CREATED, String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_IDS, "e0002"),
+				String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_LOGINS, "login3")), messages(batchResult));
+		assertEquals(4, employeeRepository.count());
+
+		batchResult = employeeService.updateEmployeeBatch(
+				List.of(employee("e0001", "login7", 1100), employee("E0002", "login8", 1200),
+						employee("e0002", "Login7", 2200), employee("e0001", "login9", 1300)));
+
+		assertEquals(List.of(ResponseMessage.MSG_SUC_UPDATED, ResponseMessage.MSG_SUC_UPDATED,
+				ResponseMessage.MSG_SUC_UPDATED, String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_IDS, "e0001")),
+				messages(batchResult));
+		assertEquals("login7", employeeRepository.findById("e0001").get().getLogin());
+		assertEquals("Login7", employeeRepository.findById("e0002").get().getLogin());
+	}
+
+	@Test
+	public void batchRejectsTooManyItems() {
+
+		List<String> idList = new ArrayList<>(Collections.nCopies(11, "e0001"));
+
+		Throwable exception = assertThrows(BadInputException.class, () -> employeeService.deleteEmployeeBatch(idList));
+		assertEquals(String.format(ResponseMessage.MSG_ERR_BATCH_SIZE_LIMIT, 10), exception.getMessage());
+
+		assertTrue(employeeRepository.existsById("e0001"));
+	}
+}
@@ -0,0 +1,94 @@
+package com.nphcswe.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.nphcswe.model.Employee;
+import com.nphcswe.repository.EmployeeRepository;
+
+@SpringBootTest
+public class EmployeeCacheTest {
+
+	@Autowired
+	private EmployeeService employeeService;
+
+	@Autowired
+	private EmployeeCache employeeCache;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	// the repository bypasses the service, so the cache is cleared directly
+	@AfterEach
+	public void cleanUp() {
+		employeeRepository.deleteAll();
+		employeeCache.invalidateAll();
+	}
+
+	private static Employee employee(String id, String name) {
+		return EmployeeFixtures.employee(id, "login" + id, name, 1000.0);
+	}
+
+	@Test
+	public void readThroughAndInvalidate() {
+
+		employeeService.saveEmployee(employee("e0001", "Harry Potter"));
+
+		long hits = employeeCache.getHits();
+		long misses = employeeCache.getMisses();
+
+		assertEquals("Harry Potter", employeeService.getEmployee("e0001").getName());
+		assertEquals("Harry Potter", employeeService.getEmployee("e0001").getName());
+		assertEquals(hits + 1, employeeCache.getHits());
+		assertEquals(misses + 1, employeeCache.getMisses());
+
+		employeeService.updateEmployee(employee("e0001", "Ron Weasley"));
+		assertEquals("Ron Weasley", employeeService.getEmployee("e0001").getName());
+
+		// uploads drop every entry
+		String csv = "id,login,name,salary,startDate\ne0001,logine0001,Severus Snape,1000.0,2001-11-16\n";
+		employeeService.uploadAndSaveEmployee(
+				new MockMultipartFile("file", "data.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8)));
+		assertEquals("Severus Snape", employeeService.getEmployee("e0001").getName());
+	}
+
+	@Test
+	public void evictsBySizeAndTtl() throws Exception {
+
+		EmployeeCache cache = new EmployeeCache(2, Duration.ofMillis(200));
+
+		cache.put(employee("e0001", "a"), cache.generation());
+		cache.put(employee("e0002", "b"), cache.generation());
+		assertTrue(cache.get("e0001").isPresent());
+
+		// e0002 is the least recently used
+		cache.put(employee("e0003", "c"), cache.generation());
+		assertEquals(2, cache.size());
+		assertFalse(cache.get("e0002").isPresent());
+
+		Thread.sleep(300);
+		assertFalse(cache.get("e0001").isPresent());
+	}
+
+	@Test
+	public void loadStartedBeforeInvalidationIsNotCached() {
+
+		EmployeeCache cache = new EmployeeCache(10, Duration.ofMinutes(1));
+
+		long loadGeneration = cache.generation();
+		cache.invalidate("e0001");
+		cache.put(employee("e0001", "stale"), loadGeneration);
+
+		assertFalse(cache.get("e0001").isPresent());
+	}
+}
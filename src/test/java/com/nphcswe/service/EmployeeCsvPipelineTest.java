@@ -0,0 +1,114 @@
+package com.nphcswe.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.nphcswe.helper.CsvCommentFilterReader;
+import com.nphcswe.helper.ResponseMessage;
+import com.nphcswe.helper.exception.BadInputException;
+
+public class EmployeeCsvPipelineTest {
+
+	private final EmployeeServiceImpl employeeService = new EmployeeServiceImpl();
+
+	// generated file with valid rows, comments, blank lines, quoted values and
+	// invalid rows
+	private static String generateCsv(long seed, int rows) {
+
+		Random random = new Random(seed);
+		StringBuilder csv = new StringBuilder("id,login,name,salary,startDate\n");
+
+		for (int i = 0; i < rows; i++) {
+			switch (random.nextInt(12)) {
+			case 0:
+				csv.append("# comment ").append(i).append('\n');
+				break;
+			case 1:
+				csv.append('\n');
+				break;
+			case 2:
+				csv.append("e").append(i).append(",login").append(i).append(",\"Doe, John\",").append(i)
+						.append(".5,2001-11-16\n");
+				break;
+			case 3:
+				csv.append("e").append(i).append(",login").append(i).append(",\"multi\nline\",10,16-Nov-01\n");
+				break;
+			case 4:
+				csv.append("e").append(i).append(",,Name ").append(i).append(",-").append(i).append(",2001-11-16\n");
+				break;
+			case 5:
+				csv.append("e").append(i).append(",login").append(i).append(",Name ").append(i)
+						.append(",-1.239,not a date\n");
+				break;
+			default:
+				csv.append("e").append(i).append(",login").append(i).append(",Name ").append(i).append(',')
+						.append(random.nextInt(100000) / 100.0).append(random.nextBoolean() ? ",2001-11-16\n" : ",16-Nov-01\n");
+			}
+		}
+		return csv.toString();
+	}
+
+	// every row and error message, with the row numbers the upload reports
+	private List<String> readAll(EmployeeCsvPipeline pipeline, String csv) {
+
+		List<String> output = new ArrayList<>();
+		int[] rowOffset = { 0 };
+
+		pipeline.read(new CsvCommentFilterReader(new StringReader(csv)), employeeService::validateRow,
+				validatedChunk -> {
+					validatedChunk.getEmployees().forEach(employee -> output.add(employee.toString()));
+					validatedChunk.getRowErrors().forEach(rowError -> output.add(rowError.toMessage(rowOffset[0])));
+					rowOffset[0] += validatedChunk.getEmployees().size();
+				});
+		return output;
+	}
+
+	@Test
+	public void parallelMatchesSequential() {
+
+		EmployeeCsvPipeline sequential = new EmployeeCsvPipeline(50, 1);
+		EmployeeCsvPipeline parallel = new EmployeeCsvPipeline(50, 4);
+
+		try {
+			for (long seed = 0; seed < 20; seed++) {
+				String csv = generateCsv(seed, 1000 + (int) seed * 37);
+
+				List<String> expected = readAll(sequential, csv);
+
+				assertTrue(expected.size() > 1000);
+				assertEquals(expected, readAll(parallel, csv), "seed " + seed);
+			}
+
+			// header only and empty files
+			assertEquals(readAll(sequential, "id,login,name,salary,startDate\n"),
+					readAll(parallel, "id,login,name,salary,startDate\n"));
+			assertEquals(readAll(sequential, ""), readAll(parallel, ""));
+		} finally {
+			sequential.shutdown();
+			parallel.shutdown();
+		}
+	}
+
+	@Test
+	public void parallelReportsParseErrors() {
+
+		EmployeeCsvPipeline parallel = new EmployeeCsvPipeline(50, 4);
+
+		String csv = generateCsv(1, 500) + "e9999,login9999,Name,1.0,2001-11-16,extra\n" + generateCsv(2, 500);
+
+		try {
+			Throwable exception = assertThrows(BadInputException.class, () -> readAll(parallel, csv));
+			assertEquals(ResponseMessage.MSG_ERR_CSV_COLUMN_FORMAT, exception.getMessage());
+		} finally {
+			parallel.shutdown();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.nphcswe.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.Date;
+
+import com.nphcswe.model.Employee;
+
+// employees and CSV files shared by the service tests
+final class EmployeeFixtures {
+
+	private EmployeeFixtures() {
+	}
+
+	static Employee employee(String id, String login, String name, double salary) {
+		Employee employee = new Employee();
+		employee.setId(id);
+		employee.setLogin(login);
+		employee.setName(name);
+		employee.setSalary(salary);
+		employee.setstartDate(Calendar.getInstance().getTime());
+		return employee;
+	}
+
+	static Employee employee(String id, String login, double salary) {
+		return employee(id, login, "Name " + id, salary);
+	}
+
+	// started on the first of March of the year
+	static Employee employee(String id, double salary, int year) {
+		Employee employee = employee(id, "login" + id, salary);
+		employee.setstartDate(startDate(year, Calendar.MARCH, 1));
+		return employee;
+	}
+
+	// midnight of the day, a start date the snapshot keeps as it is
+	static Date startDate(int year, int month, int day) {
+		Calendar startDate = Calendar.getInstance();
+		startDate.clear();
+		startDate.set(year, month, day);
+		return startDate.getTime();
+	}
+
+	// valid rows e0, e1, ... with logins login0, login1, ...
+	static byte[] generateCsv(int rows) {
+		return generateCsv("e", "login", rows);
+	}
+
+	static byte[] generateCsv(String idPrefix, String loginPrefix, int rows) {
+		StringBuilder csv = new StringBuilder("id,login,name,salary,startDate\n");
+		for (int i = 0; i < rows; i++) {
+			csv.append(idPrefix).append(i).append(',').append(loginPrefix).append(i).append(",Employee Name ").append(i)
+					.append(',').append(1000 + i % 5000).append(".25,2001-11-16\n");
+		}
+		return csv.toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
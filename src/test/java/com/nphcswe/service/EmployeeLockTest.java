@@ -0,0 +1,348 @@
+package com.nphcswe.service;
+
+import static com.nphcswe.service.EmployeeFixtures.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nphcswe.helper.ResponseMessage;
+import com.nphcswe.helper.exception.BadInputException;
+import com.nphcswe.helper.exception.ServiceBusyException;
+import com.nphcswe.model.Employee;
+import com.nphcswe.model.EmployeeAudit;
+import com.nphcswe.model.EmployeeImage;
+import com.nphcswe.model.SalarySketch;
+import com.nphcswe.repository.EmployeeAuditRepository;
+import com.nphcswe.repository.EmployeeRepository;
+
+// a context of its own, the audit sequence is created with it and its ids stay
+// in commit order while the test runs
+@SpringBootTest(properties = "employee.lock.timeout=PT10S")
+public class EmployeeLockTest {
+
+	private static final int EMPLOYEES = 12;
+
+	private static final int LOGINS = 16;
+
+	private static final int THREADS = 8;
+
+	private static final int OPERATIONS = 150;
+
+	@Autowired
+	private EmployeeService employeeService;
+
+	@Autowired
+	private EmployeeLockService employeeLockService;
+
+	@Autowired
+	private EmployeeAuditService employeeAuditService;
+
+	@Autowired
+	private SalaryStatisticsService salaryStatisticsService;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	@Autowired
+	private EmployeeAuditRepository employeeAuditRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	// other test contexts share the database and write their audit entries in
+	// the background, the ids used here are not used by other tests
+	@BeforeEach
+	public void setUp() {
+		employeeRepository.deleteAll();
+		employeeAuditService.writeQueued();
+		employeeAuditRepository.deleteAll();
+	}
+
+	@AfterEach
+	public void cleanUp() {
+		employeeRepository.deleteAll();
+	}
+
+	private static String id(int i) {
+		return String.format("s%04d", i);
+	}
+
+	// mixed case, the lock and the unique check both ignore the case
+	private static String login(int i) {
+		return (i % 2 == 0 ? "login" : "LOGIN") + i;
+	}
+
+	private static String describe(EmployeeImage image) {
+		if (image == null) {
+			return null;
+		}
+		return image.getLogin() + "|" + image.getName() + "|" + image.getSalary() + "|"
+				+ (image.getStartDate() != null ? image.getStartDate().getTime() : null);
+	}
+
+	// one random write, rejected writes end with the validation message of the
+	// conflict they ran into or with a 503 for a key locked out of order
+	private void randomWrite(Random random) {
+
+		String id = id(random.nextInt(EMPLOYEES));
+		String login = login(random.nextInt(LOGINS)).toLowerCase();
+		double salary = random.nextInt(100000) / 100.0;
+
+		switch (random.nextInt(10)) {
+		case 0:
+		case 1:
+			employeeService.saveEmployee(employee(id, login, salary));
+			break;
+		case 2:
+			employeeService.deleteEmployee(id);
+			break;
+		case 3:
+			employeeService.updateEmployeeBatch(List.of(employee(id, login, salary),
+					employee(id(random.nextInt(EMPLOYEES)), login(random.nextInt(LOGINS)), salary + 1)));
+			break;
+		case 4:
+			StringBuilder csv = new StringBuilder("id,login,name,salary,startDate\n");
+			for (int i = 0; i < 3; i++) {
+				int row = random.nextInt(EMPLOYEES);
+				csv.append(id(row)).append(',').append(login(row)).append(",Upload ").append(i).append(',')
+						.append(salary + i).append(",2001-11-16\n");
+			}
+			employeeService.uploadAndSaveEmployee(
+					new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), rowsProcessed -> {
+					});
+			break;
+		default:
+			employeeService.updateEmployee(employee(id, login, salary));
+		}
+	}
+
+	@Test
+	public void concurrentWritesKeepHistoryAndStatisticsConsistent() throws Exception {
+
+		for (int i = 0; i < EMPLOYEES; i += 2) {
+			employeeService.saveEmployee(employee(id(i), login(i), 1000 + i));
+		}
+
+		// drift left by other tests is corrected first
+		salaryStatisticsService.recompute();
+
+		ConcurrentLinkedQueue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+		ConcurrentLinkedQueue<String> rejected = new ConcurrentLinkedQueue<>();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			Random random = new Random(t);
+			futures.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < OPERATIONS; i++) {
+					try {
+						randomWrite(random);
+					} catch (BadInputException | ServiceBusyException ex) {
+						rejected.add(ex.getMessage());
+					} catch (RuntimeException ex) {
+						unexpected.add(ex);
+					}
+				}
+				return null;
+			}));
+		}
+
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get(5, TimeUnit.MINUTES);
+		}
+		executor.shutdown();
+
+		assertEquals(Collections.emptyList(), new ArrayList<>(unexpected));
+		assertTrue(rejected.stream().noneMatch(ResponseMessage.MSG_ERR_UNKNOWN::equals));
+
+		// every entry starts where the one before it ended and the last one
+		// matches the stored row
+		for (int i = 0; i < EMPLOYEES; i++) {
+			String id = id(i);
+			List<EmployeeAudit> history = employeeAuditService.getHistory(id);
+
+			String previous = null;
+			for (EmployeeAudit entry : history) {
+				assertEquals(previous, describe(entry.getBefore()), id + " " + entry.getId());
+				previous = describe(entry.getAfter());
+			}
+			assertEquals(describe(EmployeeImage.of(employeeRepository.findById(id).orElse(null))), previous, id);
+		}
+
+		// the statistics hold exactly the stored rows
+		SalarySketch statistics = salaryStatisticsService.getStatistics().getOverall();
+		List<Employee> employeeList = employeeRepository.findAll();
+		double salarySum = employeeList.stream().mapToDouble(Employee::getSalary).sum();
+
+		assertEquals(employeeList.size(), statistics.getCount());
+		assertEquals(salarySum, statistics.getSum(), 0.001);
+	}
+
+	@Test
+	public void keysDifferingInCaseShareAStripe() {
+
+		assertEquals(employeeLockService.stripeIndex("Login1"), employeeLockService.stripeIndex("lOGIN1"));
+		assertTrue(employeeLockService.stripeIndex("login1") < employeeLockService.getStripeCount());
+	}
+
+	@Test
+	public void lockTimeoutAnswersServiceBusy() throws Exception {
+
+		EmployeeLockService lockService = new EmployeeLockService(16, Duration.ofMillis(100), Duration.ofSeconds(5));
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		CountDownLatch locked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		try {
+			Future<?> holder = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+				lockService.lockKeys(List.of("s0001"));
+				locked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+			locked.await();
+
+			ServiceBusyException exception = assertThrows(ServiceBusyException.class, () -> transactionTemplate
+					.executeWithoutResult(status -> lockService.lockKeys(List.of("S0001"))));
+			assertEquals(ResponseMessage.MSG_ERR_WRITE_CONFLICT, exception.getMessage());
+
+			// other keys and, once released, the same key are free again
+			transactionTemplate.executeWithoutResult(status -> lockService.lockKeys(List.of("s0002", "s0003")));
+			assertNotEquals(lockService.stripeIndex("s0001"), lockService.stripeIndex("s0002"));
+
+			release.countDown();
+			holder.get(1, TimeUnit.MINUTES);
+			transactionTemplate.executeWithoutResult(status -> lockService.lockKeys(List.of("S0001")));
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void uploadLocksOnlyTheKeysOfItsChunks() throws Exception {
+
+		EmployeeLockService lockService = new EmployeeLockService(16, Duration.ofMillis(100), Duration.ofSeconds(5));
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		CountDownLatch locked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+			Future<?> upload = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+				lockService.lockUpload();
+				lockService.lockKeys(List.of("s0001"));
+				locked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+			locked.await();
+
+			// writes of other keys go ahead, the chunk's keys wait
+			transactionTemplate.executeWithoutResult(status -> lockService.lockKeys(List.of("s0002")));
+			assertThrows(ServiceBusyException.class,
+					() -> transactionTemplate.executeWithoutResult(status -> lockService.lockKeys(List.of("s0001"))));
+
+			// a second upload waits past the timeout until the first one is done
+			Future<?> nextUpload = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+				lockService.lockUpload();
+				lockService.lockKeys(List.of("s0001"));
+			}));
+			assertThrows(TimeoutException.class, () -> nextUpload.get(500, TimeUnit.MILLISECONDS));
+
+			release.countDown();
+			upload.get(1, TimeUnit.MINUTES);
+			nextUpload.get(1, TimeUnit.MINUTES);
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void updateLocksTheLoginItGivesUp() throws Exception {
+
+		employeeService.saveEmployee(employee(id(0), "oldlogin", 1000));
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		CountDownLatch locked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+			Future<?> holder = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+				employeeLockService.lockKeys(List.of("OLDLOGIN"));
+				locked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+			locked.await();
+
+			// depending on the stripe order the update waits or is refused, it
+			// never writes while the old login is locked
+			Future<?> update = executor.submit(() -> employeeService.updateEmployee(employee(id(0), "newlogin", 2000)));
+			boolean refused = false;
+			try {
+				update.get(500, TimeUnit.MILLISECONDS);
+			} catch (ExecutionException ex) {
+				assertTrue(ex.getCause() instanceof ServiceBusyException, ex.getCause().toString());
+				refused = true;
+			} catch (TimeoutException ex) {
+				// still waiting
+			}
+			assertEquals("oldlogin", employeeRepository.findById(id(0)).get().getLogin());
+
+			release.countDown();
+			holder.get(1, TimeUnit.MINUTES);
+			if (refused) {
+				employeeService.updateEmployee(employee(id(0), "newlogin", 2000));
+			} else {
+				update.get(1, TimeUnit.MINUTES);
+			}
+			assertEquals("newlogin", employeeRepository.findById(id(0)).get().getLogin());
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+	}
+}
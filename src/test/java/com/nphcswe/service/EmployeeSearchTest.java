@@ -0,0 +1,342 @@
+package com.nphcswe.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.Session;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nphcswe.helper.ResponseMessage;
+import com.nphcswe.helper.exception.BadInputException;
+import com.nphcswe.model.Employee;
+import com.nphcswe.model.SearchResult;
+import com.nphcswe.repository.EmployeeRepository;
+
+// the statements of the database search are checked, the snapshot is off
+@SpringBootTest(properties = {
+		"spring.jpa.properties.hibernate.session_factory.statement_inspector=com.nphcswe.service.EmployeeSearchTest$SqlCapture",
+		"employee.search.snapshot.enabled=false" })
+public class EmployeeSearchTest {
+
+	// records every statement hibernate prepares, except the audit writes which
+	// run on their own thread at any time
+	public static class SqlCapture implements StatementInspector {
+
+		static final List<String> statements = new CopyOnWriteArrayList<>();
+
+		@Override
+		public String inspect(String sql) {
+			if (!Thread.currentThread().getName().startsWith("employee-audit")) {
+				statements.add(sql.toLowerCase());
+			}
+			return sql;
+		}
+	}
+
+	@Autowired
+	private EmployeeService employeeService;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@BeforeEach
+	public void setUp() {
+		for (int i = 1; i <= 5; i++) {
+			Employee employee = new Employee();
+			employee.setId("e000" + i);
+			employee.setLogin("login" + i);
+			employee.setName("Name " + i);
+			employee.setSalary(1000.0 * i);
+			employee.setstartDate(Calendar.getInstance().getTime());
+			employeeRepository.save(employee);
+		}
+		SqlCapture.statements.clear();
+	}
+
+	@AfterEach
+	public void cleanUp() {
+		employeeRepository.deleteAll();
+	}
+
+	@Test
+	public void searchFiltersInDatabase() {
+
+		Map<String, String> searchCriteria = new HashMap<>();
+		searchCriteria.put("minSalary", "1000");
+		searchCriteria.put("maxSalary", "4000");
+
+		List<Employee> employeeList = employeeService.searchEmployeeList(searchCriteria).getResults();
+
+		// bounds are exclusive
+		assertEquals(List.of("e0002", "e0003"), employeeList.stream().map(Employee::getId).collect(Collectors.toList()));
+
+		assertEquals(1, SqlCapture.statements.size());
+		String sql = SqlCapture.statements.get(0);
+		assertTrue(sql.matches("(?s).* where .*salary>\\? and .*salary<\\?.*"), sql);
+	}
+
+	@Test
+	public void searchPagesWithCursor() {
+
+		Map<String, String> searchCriteria = new HashMap<>();
+		searchCriteria.put("maxSalary", "10000");
+		searchCriteria.put("limit", "2");
+
+		List<String> ids = new ArrayList<>();
+		List<String> cursors = new ArrayList<>();
+		SearchResult searchResult = employeeService.searchEmployeeList(searchCriteria);
+		ids.addAll(searchResult.getResults().stream().map(Employee::getId).collect(Collectors.toList()));
+
+		while (searchResult.getNextCursor() != null) {
+			cursors.add(searchResult.getNextCursor());
+			searchCriteria.put("cursor", searchResult.getNextCursor());
+			searchResult = employeeService.searchEmployeeList(searchCriteria);
+			ids.addAll(searchResult.getResults().stream().map(Employee::getId).collect(Collectors.toList()));
+		}
+
+		assertEquals(List.of("e0001", "e0002", "e0003", "e0004", "e0005"), ids);
+		assertEquals(2, cursors.size());
+
+		// every page is a seek on id, never an offset
+		assertTrue(SqlCapture.statements.stream().noneMatch(sql -> sql.contains("offset")));
+		assertTrue(SqlCapture.statements.stream().skip(1).allMatch(sql -> sql.matches("(?s).*\\.id>\\?.*")),
+				SqlCapture.statements.toString());
+	}
+
+	@Test
+	public void searchRejectsInvalidPaging() {
+
+		Map<String, String> searchCriteria = new HashMap<>();
+		searchCriteria.put("limit", "0");
+
+		Throwable exception = assertThrows(BadInputException.class,
+				() -> employeeService.searchEmployeeList(searchCriteria));
+		assertEquals(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, "limit"), exception.getMessage());
+
+		// limit + 1 would overflow
+		searchCriteria.put("limit", Integer.toString(Integer.MAX_VALUE));
+
+		exception = assertThrows(BadInputException.class, () -> employeeService.searchEmployeeList(searchCriteria));
+		assertEquals(String.format(ResponseMessage.MSG_ERR_PAGE_SIZE_LIMIT, 10000), exception.getMessage());
+
+		searchCriteria.put("limit", "10000");
+		employeeService.searchEmployeeList(searchCriteria);
+
+		searchCriteria.put("limit", "2");
+		searchCriteria.put("cursor", "not a cursor");
+
+		exception = assertThrows(BadInputException.class, () -> employeeService.searchEmployeeList(searchCriteria));
+		assertEquals(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, "cursor"), exception.getMessage());
+	}
+
+	@Test
+	public void streamReadsMatchingRows() {
+
+		Map<String, String> searchCriteria = new HashMap<>();
+		searchCriteria.put("minSalary", "1000");
+		searchCriteria.put("maxSalary", "10000");
+
+		List<String> ids = new ArrayList<>();
+		employeeService.streamEmployeeList(searchCriteria, employee -> ids.add(employee.getId()));
+		assertEquals(List.of("e0002", "e0003", "e0004", "e0005"), ids);
+
+		assertEquals(1, SqlCapture.statements.size());
+		assertTrue(SqlCapture.statements.get(0).matches("(?s).* where .*salary>\\? and .*salary<\\?.*"));
+
+		ids.clear();
+		searchCriteria.put("limit", "3");
+		employeeService.streamEmployeeList(searchCriteria, employee -> ids.add(employee.getId()));
+		assertEquals(List.of("e0002", "e0003", "e0004"), ids);
+	}
+
+	@Test
+	public void searchMatchesNameAndLogin() {
+
+		Map<String, String> searchCriteria = new HashMap<>();
+		searchCriteria.put("maxSalary", "10000");
+		searchCriteria.put("name", "AME");
+
+		assertEquals(List.of("e0001", "e0002", "e0003", "e0004", "e0005"),
+				ids(employeeService.searchEmployeeList(searchCriteria).getResults()));
+		assertTrue(SqlCapture.statements.get(0).contains("like"), SqlCapture.statements.get(0));
+
+		searchCriteria.put("name", "name 4*");
+		assertEquals(List.of("e0004"), ids(employeeService.searchEmployeeList(searchCriteria).getResults()));
+
+		// not a prefix of any name
+		searchCriteria.put("name", "ame*");
+		assertEquals(List.of(), ids(employeeService.searchEmployeeList(searchCriteria).getResults()));
+
+		// like wildcards are matched literally
+		searchCriteria.put("name", "%");
+		assertEquals(List.of(), ids(employeeService.searchEmployeeList(searchCriteria).getResults()));
+
+		searchCriteria.remove("name");
+		searchCriteria.put("login", "IN2");
+		assertEquals(List.of("e0002"), ids(employeeService.searchEmployeeList(searchCriteria).getResults()));
+	}
+
+	@Test
+	public void searchSelectsRequestedFields() {
+
+		Map<String, String> searchCriteria = new HashMap<>();
+		searchCriteria.put("maxSalary", "10000");
+		searchCriteria.put("fields", "login,name");
+		searchCriteria.put("limit", "2");
+
+		SearchResult searchResult = employeeService.searchEmployeeList(searchCriteria);
+
+		Employee employee = searchResult.getResults().get(0);
+		assertEquals("login1", employee.getLogin());
+		assertEquals("Name 1", employee.getName());
+		assertNull(employee.getId());
+		assertNull(employee.getSalary());
+		assertNull(employee.getstartDate());
+
+		// the id is still read for the cursor
+		assertNotNull(searchResult.getNextCursor());
+
+		String select = SqlCapture.statements.get(0);
+		select = select.substring(0, select.indexOf(" from "));
+		assertTrue(select.contains("login") && select.contains("name") && select.contains("id"), select);
+		assertFalse(select.contains("salary") || select.contains("start_date"), select);
+
+		List<String> logins = new ArrayList<>();
+		searchCriteria.remove("limit");
+		employeeService.streamEmployeeList(searchCriteria, streamed -> logins.add(streamed.getLogin()));
+		assertEquals(List.of("login1", "login2", "login3", "login4", "login5"), logins);
+
+		searchCriteria.put("fields", "login,password");
+		Throwable exception = assertThrows(BadInputException.class,
+				() -> employeeService.searchEmployeeList(searchCriteria));
+		assertEquals(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, "fields"), exception.getMessage());
+	}
+
+	@Test
+	public void searchSortsAndLimitsInDatabase() {
+
+		// same salary, ordered by id in the sort direction
+		for (int i = 6; i <= 7; i++) {
+			Employee employee = new Employee();
+			employee.setId("e000" + i);
+			employee.setLogin("login" + i);
+			employee.setName("Name 0" + i);
+			employee.setSalary(3000.0);
+			employee.setstartDate(Calendar.getInstance().getTime());
+			employeeRepository.save(employee);
+		}
+		SqlCapture.statements.clear();
+
+		Map<String, String> searchCriteria = new HashMap<>();
+		searchCriteria.put("maxSalary", "10000");
+		searchCriteria.put("sort", "salary,desc");
+		searchCriteria.put("limit", "2");
+
+		assertEquals(List.of("e0005", "e0004", "e0007", "e0006", "e0003", "e0002", "e0001"),
+				pageAll(searchCriteria, Employee::getId));
+
+		// sorted and cut by the database, later pages seek past the last row
+		String sql = SqlCapture.statements.get(0);
+		assertTrue(sql.matches("(?s).* order by .*salary desc, .*id desc limit \\?.*"), sql);
+		assertTrue(SqlCapture.statements.stream().skip(1).allMatch(sql2 -> sql2.matches("(?s).*salary<\\?.*")),
+				SqlCapture.statements.toString());
+
+		// the sort property is read even when it is not requested
+		searchCriteria.put("sort", "name");
+		searchCriteria.put("fields", "login");
+		List<String> logins = List.of("login6", "login7", "login1", "login2", "login3", "login4", "login5");
+		assertEquals(logins, pageAll(searchCriteria, Employee::getLogin));
+
+		List<String> streamed = new ArrayList<>();
+		searchCriteria.remove("limit");
+		employeeService.streamEmployeeList(searchCriteria, employee -> streamed.add(employee.getLogin()));
+		assertEquals(logins, streamed);
+
+		// a cursor only continues its own sort order
+		searchCriteria.put("limit", "2");
+		searchCriteria.put("sort", "salary,desc");
+		searchCriteria.put("cursor", employeeService.searchEmployeeList(searchCriteria).getNextCursor());
+		searchCriteria.put("sort", "salary");
+		Throwable exception = assertThrows(BadInputException.class,
+				() -> employeeService.searchEmployeeList(searchCriteria));
+		assertEquals(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, "cursor"), exception.getMessage());
+
+		searchCriteria.remove("cursor");
+		searchCriteria.put("sort", "password,desc");
+		exception = assertThrows(BadInputException.class, () -> employeeService.searchEmployeeList(searchCriteria));
+		assertEquals(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, "sort"), exception.getMessage());
+
+		searchCriteria.put("sort", "salary,sideways");
+		exception = assertThrows(BadInputException.class, () -> employeeService.searchEmployeeList(searchCriteria));
+		assertEquals(String.format(ResponseMessage.MSG_ERR_INVALID_FIELD, "sort"), exception.getMessage());
+	}
+
+	@Test
+	public void searchReturnsReadOnlyRows() {
+
+		Map<String, String> searchCriteria = new HashMap<>();
+		searchCriteria.put("maxSalary", "10000");
+
+		// joined to the caller's transaction the rows are still not dirty checked
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			List<Employee> employeeList = employeeService.searchEmployeeList(searchCriteria).getResults();
+			assertEquals(5, employeeList.size());
+
+			Session session = entityManager.unwrap(Session.class);
+			assertTrue(employeeList.stream().allMatch(session::isReadOnly));
+
+			employeeList.get(0).setName("Changed");
+		});
+
+		assertEquals("Name 1", employeeRepository.findById("e0001").get().getName());
+	}
+
+	// rows of every page, following the cursors
+	private List<String> pageAll(Map<String, String> searchCriteria, Function<Employee, String> property) {
+
+		Map<String, String> pageCriteria = new HashMap<>(searchCriteria);
+		List<Employee> employeeList = new ArrayList<>();
+		SearchResult searchResult = employeeService.searchEmployeeList(pageCriteria);
+		employeeList.addAll(searchResult.getResults());
+
+		while (searchResult.getNextCursor() != null) {
+			pageCriteria.put("cursor", searchResult.getNextCursor());
+			searchResult = employeeService.searchEmployeeList(pageCriteria);
+			employeeList.addAll(searchResult.getResults());
+		}
+		return employeeList.stream().map(property).collect(Collectors.toList());
+	}
+
+	private static List<String> ids(List<Employee> employeeList) {
+		return employeeList.stream().map(Employee::getId).collect(Collectors.toList());
+	}
+}
@@ -10,11 +10,14 @@ import java.util.Optional;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 
 import com.nphcswe.helper.ResponseMessage;
 import com.nphcswe.helper.exception.BadInputException;
@@ -30,6 +33,15 @@ public class EmployeeServiceTest {
 	@Mock
 	private EmployeeRepository employeeRepository;
 
+	@Mock
+	private ApplicationEventPublisher applicationEventPublisher;
+
+	@Mock
+	private EmployeeCache employeeCache;
+
+	@Mock
+	private EmployeeLockService employeeLockService;
+
 	private static final Logger logger = LogManager.getLogger();
 
 	@Test
@@ -65,12 +77,22 @@ public class EmployeeServiceTest {
 
 		// employee exist
 
-		Mockito.when(employeeRepository.existsById(employee.getId())).thenReturn(true);
+		Mockito.doThrow(constraintViolation("PRIMARY KEY ON PUBLIC.EMPLOYEES_TABLE(ID)")).when(employeeRepository)
+				.insert(employee);
 
 		exception = assertThrows(BadInputException.class, () -> employeeService.saveEmployee(employee));
 
 		assertEquals(ResponseMessage.MSG_ERR_EMPLOYEE_EXIST, exception.getMessage());
 
+		// login exists
+
+		Mockito.doThrow(constraintViolation("PUBLIC.UK_EMPLOYEES_LOGIN_INDEX_5 ON PUBLIC.EMPLOYEES_TABLE(LOGIN)"))
+				.when(employeeRepository).insert(employee);
+
+		exception = assertThrows(BadInputException.class, () -> employeeService.saveEmployee(employee));
+
+		assertEquals(ResponseMessage.MSG_ERR_NOT_UNIQUE_EMPLOYEE_LOGIN, exception.getMessage());
+
 		// mandotry field missing
 
 		Employee userForInvalid = new Employee();
@@ -80,25 +102,37 @@ public class EmployeeServiceTest {
 		assertEquals("[ID,Login,Name,Salary] is mandatory,Invalid Salary,Start Date", exception.getMessage());
 
 		// success
-		Mockito.when(employeeRepository.existsById(employee.getId())).thenReturn(false);
+		Mockito.doNothing().when(employeeRepository).insert(employee);
 
 		assertDoesNotThrow(() -> employeeService.saveEmployee(employee));
 
 		employeeService.saveEmployee(employee);
 
+		// one statement per create, no lookups before it
+		Mockito.verify(employeeRepository, Mockito.times(4)).insert(employee);
+		Mockito.verify(employeeRepository, Mockito.never()).existsById(employee.getId());
+
 		// =========== update ============= //
 
 		// employee doesn't exists
-		Mockito.when(employeeRepository.existsById(employee.getId())).thenReturn(false);
+		Mockito.when(employeeRepository.findForUpdateById(employee.getId())).thenReturn(Optional.empty());
 
 		exception = assertThrows(BadInputException.class, () -> employeeService.updateEmployee(employee));
 
 		assertEquals(ResponseMessage.MSG_ERR_NO_SUCH_EMPLOYEE, exception.getMessage());
 
 		// employee exists
-		Mockito.when(employeeRepository.existsById(employee.getId())).thenReturn(true);
+		Employee employeeDb = new Employee();
+		employeeDb.setId(employee.getId());
+		employeeDb.setLogin("potter");
+		employeeDb.setName("Harry Potter");
+		employeeDb.setSalary(1000.0);
+		employeeDb.setstartDate(today.getTime());
+
+		Mockito.when(employeeRepository.findForUpdateById(employee.getId())).thenReturn(Optional.of(employeeDb));
 
-		Mockito.when(employeeRepository.existsByLoginAndIdNot(employee.getLogin(), employee.getId())).thenReturn(true);
+		Mockito.doThrow(constraintViolation("PUBLIC.UK_EMPLOYEES_LOGIN_INDEX_5 ON PUBLIC.EMPLOYEES_TABLE(LOGIN)"))
+				.when(employeeRepository).flush();
 
 		exception = assertThrows(BadInputException.class, () -> employeeService.updateEmployee(employee));
 
@@ -106,7 +140,7 @@ public class EmployeeServiceTest {
 
 		// invalid field
 
-		Mockito.when(employeeRepository.existsByLoginAndIdNot(employee.getLogin(), employee.getId())).thenReturn(false);
+		Mockito.doNothing().when(employeeRepository).flush();
 
 		employee.setSalary(-1.0);
 
@@ -127,7 +161,11 @@ public class EmployeeServiceTest {
 
 		assertDoesNotThrow(() -> employeeService.updateEmployee(employee));
 
-		Mockito.verify(employeeRepository, Mockito.times(3)).save(employee);
+		assertEquals(0.0, employeeDb.getSalary());
+		assertEquals("harry", employeeDb.getLogin());
+
+		Mockito.verify(employeeRepository, Mockito.times(2)).flush();
+		Mockito.verify(employeeRepository, Mockito.never()).save(employee);
 
 		// =========== delete ============= //
 
@@ -147,6 +185,11 @@ public class EmployeeServiceTest {
 
 	}
 
+	private static DataIntegrityViolationException constraintViolation(String constraintName) {
+		return new DataIntegrityViolationException("could not execute statement",
+				new ConstraintViolationException("could not execute statement", null, constraintName));
+	}
+
 	@Test
 	public void TestValidation() {
 		Throwable exception = null;
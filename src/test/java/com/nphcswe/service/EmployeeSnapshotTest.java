@@ -0,0 +1,218 @@
+package com.nphcswe.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.nphcswe.helper.TextMatch;
+import com.nphcswe.model.Employee;
+import com.nphcswe.model.EmployeeChangeEvent;
+import com.nphcswe.repository.EmployeeRepository;
+
+// a context of its own, other tests remove rows through the repository
+@SpringBootTest(properties = "employee.search.snapshot.enabled=true")
+public class EmployeeSnapshotTest {
+
+	@Autowired
+	private EmployeeService employeeService;
+
+	@Autowired
+	private EmployeeSnapshotService employeeSnapshotService;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	@Autowired
+	private ApplicationEventPublisher applicationEventPublisher;
+
+	// the repository bypasses the service, so the snapshot is told directly
+	@AfterEach
+	public void cleanUp() {
+		employeeRepository.deleteAll();
+		applicationEventPublisher.publishEvent(new EmployeeChangeEvent(EmployeeChangeEvent.Type.DELETED, null));
+	}
+
+	private static final String[] NAMES = { "Harry", "Potter", "Ron", "Weasley", "Severus", "Snape", "Hermione",
+			"Granger", "Albus", "Dumbledore" };
+
+	private static Employee employee(String id, double salary) {
+		Employee employee = EmployeeFixtures.employee(id, "login" + id, NAMES[Math.floorMod(id.hashCode(), NAMES.length)]
+				+ " " + NAMES[Math.floorMod(id.hashCode() / 7, NAMES.length)], salary);
+		employee.setstartDate(EmployeeFixtures.startDate(2001, Calendar.NOVEMBER, 16));
+		return employee;
+	}
+
+	private static List<String> ids(List<Employee> employeeList) {
+		return employeeList.stream().map(Employee::getId).collect(Collectors.toList());
+	}
+
+	@Test
+	public void snapshotMatchesFilter() {
+
+		Random random = new Random(7);
+		List<Employee> employeeList = new ArrayList<>();
+		for (int i = 0; i < 3000; i++) {
+			employeeList.add(employee(String.format("e%05d", random.nextInt(100000)), random.nextInt(500) * 10.0));
+		}
+		employeeList = new ArrayList<>(employeeList.stream()
+				.collect(Collectors.toMap(Employee::getId, employee -> employee, (a, b) -> a)).values());
+		employeeList.sort(Comparator.comparing(Employee::getId));
+
+		EmployeeSnapshot.Builder builder = new EmployeeSnapshot.Builder(0);
+		employeeList.forEach(builder::add);
+		EmployeeSnapshot snapshot = builder.build();
+
+		for (int i = 0; i < 200; i++) {
+			double minSalary = random.nextInt(520) * 10.0 - 100;
+			double maxSalary = minSalary + random.nextInt(2000);
+			String afterId = random.nextBoolean() ? String.format("e%05d", random.nextInt(100000)) : null;
+			int maxRows = random.nextBoolean() ? 1 + random.nextInt(50) : Integer.MAX_VALUE;
+
+			List<String> expected = employeeList.stream()
+					.filter(employee -> employee.getSalary() > minSalary && employee.getSalary() < maxSalary)
+					.filter(employee -> afterId == null || employee.getId().compareTo(afterId) > 0).limit(maxRows)
+					.map(Employee::getId).collect(Collectors.toList());
+
+			assertEquals(expected, ids(snapshot.search(minSalary, maxSalary, null, null, afterId, maxRows)));
+		}
+
+		for (int i = 0; i < 300; i++) {
+			Employee sample = employeeList.get(random.nextInt(employeeList.size()));
+			String text = random.nextBoolean() ? sample.getName() : sample.getLogin();
+			int start = random.nextInt(text.length());
+			String value = text.substring(start, start + 1 + random.nextInt(Math.min(6, text.length() - start)));
+			value = random.nextBoolean() ? value.toUpperCase() : value;
+			String pattern = random.nextInt(4) == 0 ? value + "*" : value;
+
+			TextMatch textMatch = TextMatch.parse(pattern);
+			boolean byName = random.nextBoolean();
+
+			List<String> expected = employeeList.stream()
+					.filter(employee -> textMatch.matches(
+							TextMatch.toLowerCase(byName ? employee.getName() : employee.getLogin())))
+					.map(Employee::getId).collect(Collectors.toList());
+
+			assertEquals(expected, ids(snapshot.search(-1, Double.MAX_VALUE, byName ? textMatch : null,
+					byName ? null : textMatch, null, Integer.MAX_VALUE)), pattern);
+		}
+
+		Employee first = snapshot.search(-1, Double.MAX_VALUE, null, null, null, 1).get(0);
+		assertEquals(employeeList.get(0).toString(), first.toString());
+	}
+
+	@Test
+	public void changedRowsMatchFilter() {
+
+		Random random = new Random(11);
+		Map<String, Employee> table = new HashMap<>();
+		for (int i = 0; i < 2000; i++) {
+			Employee employee = employee(String.format("e%05d", random.nextInt(10000)), random.nextInt(500) * 10.0);
+			table.put(employee.getId(), employee);
+		}
+
+		EmployeeSnapshot.Builder builder = new EmployeeSnapshot.Builder(0);
+		table.values().stream().sorted(Comparator.comparing(Employee::getId)).forEach(builder::add);
+		EmployeeSnapshot snapshot = builder.build();
+
+		// creates, updates and deletes by id, then folded into new columns
+		for (int step = 1; step <= 20; step++) {
+			Map<String, Employee> changedRows = new HashMap<>();
+			for (int i = 0; i < 50; i++) {
+				String id = String.format("e%05d", random.nextInt(10000));
+				Employee employee = random.nextInt(3) == 0 ? null : employee(id, random.nextInt(500) * 10.0);
+				changedRows.put(id, employee);
+				if (employee != null) {
+					table.put(id, employee);
+				} else {
+					table.remove(id);
+				}
+			}
+			snapshot = snapshot.apply(step, changedRows);
+			if (step % 5 == 0) {
+				snapshot = snapshot.compact();
+				assertEquals(0, snapshot.getChangedRowCount());
+			}
+
+			List<Employee> employeeList = new ArrayList<>(table.values());
+			employeeList.sort(Comparator.comparing(Employee::getId));
+			for (int i = 0; i < 20; i++) {
+				double minSalary = random.nextInt(520) * 10.0 - 100;
+				double maxSalary = minSalary + random.nextInt(2000);
+				String afterId = random.nextBoolean() ? String.format("e%05d", random.nextInt(10000)) : null;
+				int maxRows = random.nextBoolean() ? 1 + random.nextInt(50) : Integer.MAX_VALUE;
+				TextMatch name = random.nextBoolean() ? TextMatch.parse(NAMES[random.nextInt(NAMES.length)]) : null;
+
+				List<String> expected = employeeList.stream()
+						.filter(employee -> employee.getSalary() > minSalary && employee.getSalary() < maxSalary)
+						.filter(employee -> name == null || name.matches(TextMatch.toLowerCase(employee.getName())))
+						.filter(employee -> afterId == null || employee.getId().compareTo(afterId) > 0)
+						.limit(maxRows).map(Employee::getId).collect(Collectors.toList());
+
+				assertEquals(expected, ids(snapshot.search(minSalary, maxSalary, name, null, afterId, maxRows)));
+			}
+		}
+	}
+
+	@Test
+	public void snapshotFollowsChanges() throws Exception {
+
+		Map<String, String> searchCriteria = new HashMap<>();
+		searchCriteria.put("maxSalary", "10000");
+
+		// the rebuild requested by the clean up of the last test
+		awaitSnapshot();
+
+		// writes are applied as they commit, without a rebuild
+		employeeService.saveEmployee(employee("e0001", 1000));
+		employeeService.saveEmployee(employee("e0002", 2000));
+		assertEquals(List.of("e0001", "e0002"), ids(snapshotSearch().get()));
+
+		Employee renamed = employee("e0002", 2500);
+		renamed.setName("Luna Lovegood");
+		employeeService.updateEmployee(renamed);
+		employeeService.deleteEmployee("e0001");
+		assertEquals(List.of("e0002"), ids(snapshotSearch().get()));
+		assertEquals("Luna Lovegood", snapshotSearch().get().get(0).getName());
+		assertEquals(List.of("e0002"), ids(employeeService.searchEmployeeList(searchCriteria).getResults()));
+
+		// an upload does not say which rows it changed, reads go to the database
+		// until the snapshot is rebuilt
+		String csv = "id,login,name,salary,startDate\ne0003,logine0003,Harry Potter,3000.0,2001-11-16\n";
+		employeeService.uploadAndSaveEmployee(
+				new MockMultipartFile("file", "data.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8)));
+		assertEquals(List.of("e0002", "e0003"), ids(employeeService.searchEmployeeList(searchCriteria).getResults()));
+		assertEquals(List.of("e0002", "e0003"), ids(awaitSnapshot().get()));
+	}
+
+	private Optional<List<Employee>> snapshotSearch() {
+		return employeeSnapshotService.search(0, 10000, null, null, null, Integer.MAX_VALUE);
+	}
+
+	private Optional<List<Employee>> awaitSnapshot() throws InterruptedException {
+		for (int i = 0; i < 100; i++) {
+			Optional<List<Employee>> result = snapshotSearch();
+			if (result.isPresent()) {
+				return result;
+			}
+			Thread.sleep(50);
+		}
+		return fail("snapshot not rebuilt");
+	}
+}
@@ -0,0 +1,134 @@
+package com.nphcswe.service;
+
+import static com.nphcswe.service.EmployeeFixtures.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.nphcswe.Application;
+import com.nphcswe.model.Employee;
+import com.nphcswe.repository.EmployeeRepository;
+
+@SpringBootTest
+public class EmployeeStoreTest {
+
+	@Autowired
+	private EmployeeService employeeService;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@TempDir
+	Path tempDir;
+
+	@AfterEach
+	public void cleanUp() {
+		employeeRepository.deleteAll();
+	}
+
+	private EmployeeStoreService storeService(Path snapshotPath) {
+		EmployeeStoreService storeService = new EmployeeStoreService(snapshotPath.toString());
+		ReflectionTestUtils.setField(storeService, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(storeService, "transactionManager", transactionManager);
+		return storeService;
+	}
+
+	private List<String> table() {
+		return employeeRepository.findAll(Sort.by("id")).stream()
+				.map(employee -> employee.toString() + "|" + employee.getstartDate().getTime())
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void snapshotRoundTrip() {
+
+		employeeService.saveEmployee(employee("e0001", "hpotter", "Harry Potter", 1234.56));
+		employeeService.saveEmployee(employee("e0002", "rwesley", "Weasley, Ron", 0));
+		employeeService.saveEmployee(employee("e0003", "snape", "Séverus Snäpe", 99999.99));
+		List<String> expected = table();
+
+		EmployeeStoreService storeService = storeService(tempDir.resolve("data/employees.snapshot"));
+		assertEquals(3, storeService.write());
+
+		employeeRepository.deleteAll();
+		assertEquals(3, storeService.load());
+		assertEquals(expected, table());
+	}
+
+	@Test
+	public void corruptSnapshotIsNotLoaded() throws Exception {
+
+		employeeService.saveEmployee(employee("e0001", "hpotter", "Harry Potter", 1234.56));
+		employeeService.saveEmployee(employee("e0002", "rwesley", "Ron Weasley", 100));
+
+		Path snapshotPath = tempDir.resolve("employees.snapshot");
+		EmployeeStoreService storeService = storeService(snapshotPath);
+		storeService.write();
+		employeeRepository.deleteAll();
+
+		byte[] content = Files.readAllBytes(snapshotPath);
+
+		// truncated file
+		Files.write(snapshotPath, Arrays.copyOf(content, content.length - 20));
+		assertThrows(UncheckedIOException.class, storeService::load);
+		assertEquals(0, employeeRepository.count());
+
+		// flipped byte in a row, caught by the checksum
+		content[20] ^= 1;
+		Files.write(snapshotPath, content);
+		assertThrows(UncheckedIOException.class, storeService::load);
+		assertEquals(0, employeeRepository.count());
+	}
+
+	// an application of its own with a database of its own, the snapshot written
+	// on shutdown is the only copy of the rows
+	private static ConfigurableApplicationContext startApplication(Path snapshotPath) {
+		// arguments, default properties would lose to application.properties
+		return new SpringApplicationBuilder(Application.class).web(WebApplicationType.NONE).run(
+				"--spring.datasource.url=jdbc:h2:mem:store-restart", "--spring.jpa.show-sql=false",
+				"--employee.store.snapshot.path=" + snapshotPath, "--employee.store.snapshot.interval=PT1H");
+	}
+
+	@Test
+	public void snapshotSurvivesRestart() {
+
+		Path snapshotPath = tempDir.resolve("employees.snapshot");
+
+		try (ConfigurableApplicationContext context = startApplication(snapshotPath)) {
+			EmployeeService restartService = context.getBean(EmployeeService.class);
+			restartService.saveEmployee(employee("e0001", "hpotter", "Harry Potter", 1234.56));
+			restartService.saveEmployee(employee("e0002", "rwesley", "Ron Weasley", 100));
+		}
+
+		try (ConfigurableApplicationContext context = startApplication(snapshotPath)) {
+			List<String> ids = context.getBean(EmployeeRepository.class).findAll(Sort.by("id")).stream()
+					.map(Employee::getId).collect(Collectors.toList());
+			assertEquals(List.of("e0001", "e0002"), ids);
+		}
+	}
+}
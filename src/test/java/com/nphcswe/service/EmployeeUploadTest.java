@@ -0,0 +1,401 @@
+package com.nphcswe.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nphcswe.helper.MappedFileInputStream;
+import com.nphcswe.helper.ResponseMessage;
+import com.nphcswe.helper.exception.BadInputException;
+import com.nphcswe.model.Employee;
+import com.nphcswe.model.UploadJob;
+import com.nphcswe.model.UploadResult;
+import com.nphcswe.model.UploadSession;
+import com.nphcswe.repository.EmployeeRepository;
+
+@SpringBootTest(properties = { "employee.upload.chunk-size=2", "employee.upload.parallelism=4",
+		"employee.upload.max-file-size=1KB", "employee.lock.timeout=PT1S" })
+public class EmployeeUploadTest {
+
+	@Autowired
+	private EmployeeService employeeService;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	@Autowired
+	private UploadJobService uploadJobService;
+
+	@Autowired
+	private UploadSpoolService uploadSpoolService;
+
+	@Autowired
+	private UploadSessionService uploadSessionService;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@AfterEach
+	public void cleanUp() {
+		employeeRepository.deleteAll();
+	}
+
+	private static MockMultipartFile csvFile(String content) {
+		return new MockMultipartFile("file", "testData.csv", MediaType.TEXT_PLAIN_VALUE, content.getBytes());
+	}
+
+	private static void assertUploadResult(long created, long updated, long unchanged, UploadResult uploadResult) {
+		assertEquals(created, uploadResult.getCreated(), "created");
+		assertEquals(updated, uploadResult.getUpdated(), "updated");
+		assertEquals(unchanged, uploadResult.getUnchanged(), "unchanged");
+	}
+
+	@Test
+	public void uploadAcrossChunks() {
+
+		String csv = "id,login,name,salary,startDate\n" + "# this is a comment\n"
+				+ "e0001,hpotter,Harry Potter,1234.00,16-Nov-01\n" + "e0002,rwesley,Ron Weasley,19234.50,2001-11-16\n"
+				+ "#e0009,ignored,Ignored,1.0,2001-11-16\n" + "e0003,ssnape,Severus Snape,4000.0,2001-11-16\n";
+
+		assertUploadResult(3, 0, 0, employeeService.uploadAndSaveEmployee(csvFile(csv)));
+
+		assertEquals(3, employeeRepository.count());
+		assertEquals("Severus Snape", employeeRepository.findById("e0003").get().getName());
+
+		// existing rows are updated in place, rows re-sent as-is are not written
+		csv = "id,login,name,salary,startDate\n" + "e0001,hpotter,Harry Potter,1234.009,2001-11-16\n"
+				+ "e0003,ssnape,Prof Snape,4000.0,2001-11-16\n";
+
+		assertUploadResult(0, 1, 1, employeeService.uploadAndSaveEmployee(csvFile(csv)));
+
+		assertEquals(3, employeeRepository.count());
+		assertEquals("Prof Snape", employeeRepository.findById("e0003").get().getName());
+
+		UploadResult uploadResult = employeeService.uploadAndSaveEmployee(csvFile(csv));
+
+		assertUploadResult(0, 0, 2, uploadResult);
+		assertFalse(uploadResult.isDataChanged());
+	}
+
+	@Test
+	public void uploadFailureRollsBackEarlierChunks() {
+
+		String csv = "id,login,name,salary,startDate\n" + "e0001,hpotter,Harry Potter,1234.00,16-Nov-01\n"
+				+ "# this is a comment\n" + "e0002,rwesley,Ron Weasley,19234.50,2001-11-16\n"
+				+ "e0003,ssnape,Severus Snape,-1,2001-11-16\n" + "e0004,,Albus Dumbledore,10,2001-11-16\n"
+				+ "e0005,hpotter2,Harry Potter,1234.00,16-Nov-01\n" + "E0005,hpotter3,Harry Potter,1234.00,16-Nov-01\n";
+
+		Throwable exception = assertThrows(BadInputException.class,
+				() -> employeeService.uploadAndSaveEmployee(csvFile(csv)));
+
+		assertEquals("[" + String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_IDS, "e0005") + ", "
+				+ String.format(ResponseMessage.MSG_ERR_INVALID_FORMAT_FIELD, 4, "Salary") + ", "
+				+ String.format(ResponseMessage.MSG_ERR_MANDATORY_ROW_FIELD, 5, "Login") + "]", exception.getMessage());
+
+		assertEquals(0, employeeRepository.count());
+	}
+
+	// only the keys of one chunk are kept, repeats in later chunks meet the
+	// rows the earlier chunks saved
+	@Test
+	public void uploadKeysRepeatedAcrossChunks() {
+
+		String csv = "id,login,name,salary,startDate\n" + "e0001,hpotter,Harry Potter,1234.00,16-Nov-01\n"
+				+ "e0002,rwesley,Ron Weasley,19234.50,2001-11-16\n" + "e0003,hpotter,Severus Snape,4000.0,2001-11-16\n";
+
+		Throwable exception = assertThrows(BadInputException.class,
+				() -> employeeService.uploadAndSaveEmployee(csvFile(csv)));
+
+		assertEquals("[" + String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_ROW_FIELD, 4, "hpotter") + "]",
+				exception.getMessage());
+		assertEquals(0, employeeRepository.count());
+
+		String repeatedIdCsv = "id,login,name,salary,startDate\n" + "e0001,hpotter,Harry Potter,1234.00,16-Nov-01\n"
+				+ "e0002,rwesley,Ron Weasley,19234.50,2001-11-16\n" + "e0001,hpotter,Harry J Potter,1234.00,16-Nov-01\n";
+
+		assertUploadResult(2, 1, 0, employeeService.uploadAndSaveEmployee(csvFile(repeatedIdCsv)));
+		assertEquals("Harry J Potter", employeeRepository.findById("e0001").get().getName());
+	}
+
+	@Test
+	public void uploadLoginTakenInDatabase() {
+
+		Employee employee = new Employee();
+		employee.setId("e0100");
+		employee.setLogin("hpotter");
+		employee.setName("Harry Potter");
+		employee.setSalary(100.0);
+		employee.setstartDate(new Date());
+		employeeRepository.save(employee);
+
+		String csv = "id,login,name,salary,startDate\n" + "e0001,rwesley,Ron Weasley,19234.50,2001-11-16\n"
+				+ "e0002,ssnape,Severus Snape,4000.0,2001-11-16\n" + "e0003,hpotter,Harry Potter,1234.00,16-Nov-01\n";
+
+		Throwable exception = assertThrows(BadInputException.class,
+				() -> employeeService.uploadAndSaveEmployee(csvFile(csv)));
+
+		assertEquals("[" + String.format(ResponseMessage.MSG_ERR_NOT_UNIQUE_ROW_FIELD, 4, "hpotter") + "]",
+				exception.getMessage());
+
+		assertEquals(1, employeeRepository.count());
+
+		// the login owner may re-send its own login
+		String ownLoginCsv = "id,login,name,salary,startDate\n" + "e0001,rwesley,Ron Weasley,19234.50,2001-11-16\n"
+				+ "e0100,hpotter,Harry J Potter,1234.00,16-Nov-01\n";
+
+		assertUploadResult(1, 1, 0, employeeService.uploadAndSaveEmployee(csvFile(ownLoginCsv)));
+
+		assertEquals(2, employeeRepository.count());
+		assertEquals("Harry J Potter", employeeRepository.findById("e0100").get().getName());
+	}
+
+	@Test
+	public void uploadTooManyColumns() {
+
+		String csv = "id,login,name,salary,startDate\n" + "e0001,hpotter,Harry Potter,1234.00,16-Nov-01,extra\n";
+
+		Throwable exception = assertThrows(BadInputException.class,
+				() -> employeeService.uploadAndSaveEmployee(csvFile(csv)));
+
+		assertEquals(ResponseMessage.MSG_ERR_CSV_COLUMN_FORMAT, exception.getMessage());
+	}
+
+	@Test
+	public void uploadAsyncJob() throws Exception {
+
+		String csv = "id,login,name,salary,startDate\n" + "e0001,hpotter,Harry Potter,1234.00,16-Nov-01\n"
+				+ "e0002,rwesley,Ron Weasley,19234.50,2001-11-16\n" + "e0003,ssnape,Severus Snape,4000.0,2001-11-16\n";
+
+		UploadJob uploadJob = uploadJobService.submit(csvFile(csv));
+
+		for (int i = 0; i < 100 && uploadJob.getFinishedAt() == null; i++) {
+			Thread.sleep(50);
+		}
+
+		assertEquals(UploadJob.State.COMPLETED, uploadJobService.getJob(uploadJob.getJobId()).getState());
+		assertEquals(3, uploadJob.getRowsProcessed());
+		assertEquals(ResponseMessage.MSG_SUC_CREATE_UPDATE, uploadJob.getResult().getMessage());
+		assertEquals(3, employeeRepository.count());
+
+		// completed jobs are evicted once their ttl has passed
+		Duration jobTtl = (Duration) ReflectionTestUtils.getField(uploadJobService, "jobTtl");
+		ReflectionTestUtils.setField(uploadJobService, "jobTtl", Duration.ofMillis(-1));
+		try {
+			Throwable exception = assertThrows(BadInputException.class,
+					() -> uploadJobService.getJob(uploadJob.getJobId()));
+			assertEquals(ResponseMessage.MSG_ERR_NO_SUCH_UPLOAD_JOB, exception.getMessage());
+		} finally {
+			ReflectionTestUtils.setField(uploadJobService, "jobTtl", jobTtl);
+		}
+	}
+
+	@Test
+	public void uploadJobWaitsForRunningUpload() throws Exception {
+
+		String csv = "id,login,name,salary,startDate\n" + "e0001,hpotter,Harry Potter,1234.00,16-Nov-01\n";
+		String nextCsv = "id,login,name,salary,startDate\n" + "e0002,rwesley,Ron Weasley,19234.50,2001-11-16\n";
+
+		// the first upload stays uncommitted for longer than the lock timeout
+		UploadJob[] uploadJob = new UploadJob[1];
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			employeeService.uploadAndSaveEmployee(csvFile(csv));
+			uploadJob[0] = uploadJobService.submit(csvFile(nextCsv));
+			try {
+				Thread.sleep(2500);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			assertEquals(UploadJob.State.RUNNING, uploadJob[0].getState());
+		});
+
+		for (int i = 0; i < 100 && uploadJob[0].getFinishedAt() == null; i++) {
+			Thread.sleep(50);
+		}
+
+		assertEquals(UploadJob.State.COMPLETED, uploadJob[0].getState());
+		assertEquals(ResponseMessage.MSG_SUC_CREATE_UPDATE, uploadJob[0].getResult().getMessage());
+		assertEquals(2, employeeRepository.count());
+	}
+
+	@Test
+	public void uploadSpooledBody() {
+
+		String csv = "id,login,name,salary,startDate\n" + "e0001,hpotter,Harry Potter,1234.00,16-Nov-01\n"
+				+ "e0002,rwesley,Ron Weasley,19234.50,2001-11-16\n" + "e0003,ssnape,Severus Snape,4000.0,2001-11-16\n";
+
+		assertUploadResult(3, 0, 0,
+				uploadSpoolService.uploadAndSaveEmployee(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))));
+		assertEquals(3, employeeRepository.count());
+
+		// body above employee.upload.max-file-size
+		StringBuilder largeCsv = new StringBuilder("id,login,name,salary,startDate\n");
+		for (int i = 0; i < 50; i++) {
+			largeCsv.append("e1").append(i).append(",login").append(i).append(",Name,1.0,2001-11-16\n");
+		}
+
+		Throwable exception = assertThrows(BadInputException.class, () -> uploadSpoolService
+				.uploadAndSaveEmployee(new ByteArrayInputStream(largeCsv.toString().getBytes(StandardCharsets.UTF_8))));
+		assertEquals(String.format(ResponseMessage.MSG_ERR_FILE_SIZE_LIMIT, "1024B"), exception.getMessage());
+		assertEquals(3, employeeRepository.count());
+	}
+
+	@Test
+	public void mappedFileReadAcrossWindows() throws Exception {
+
+		byte[] content = "id,login,name,salary,startDate\ne0001,hpotter,Harry Potter,1234.00,16-Nov-01\n"
+				.getBytes(StandardCharsets.UTF_8);
+		Path csvFile = uploadSpoolService.spool(new ByteArrayInputStream(content));
+
+		try (InputStream in = new MappedFileInputStream(csvFile, 7)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			assertEquals('i', in.read());
+			out.write('i');
+			byte[] buffer = new byte[5];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			assertArrayEquals(content, out.toByteArray());
+		} finally {
+			uploadSpoolService.deleteQuietly(csvFile);
+		}
+	}
+
+	@Test
+	public void uploadGzipCompressed() throws Exception {
+
+		String csv = "id,login,name,salary,startDate\n" + "# this is a comment\n"
+				+ "e0001,hpotter,Harry Potter,1234.00,16-Nov-01\n" + "e0002,rwesley,Ron Weasley,19234.50,2001-11-16\n";
+
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (OutputStream out = new GZIPOutputStream(compressed)) {
+			out.write(csv.getBytes(StandardCharsets.UTF_8));
+		}
+
+		assertUploadResult(2, 0, 0, employeeService.uploadAndSaveEmployee(
+				new MockMultipartFile("file", "testData.csv.gz", "application/gzip", compressed.toByteArray())));
+		assertUploadResult(0, 0, 2, uploadSpoolService
+				.uploadAndSaveEmployee(new ByteArrayInputStream(compressed.toByteArray())));
+		assertEquals("Ron Weasley", employeeRepository.findById("e0002").get().getName());
+	}
+
+	private static String sha256(byte[] content) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void uploadResumableSession() throws Exception {
+
+		String csv = "id,login,name,salary,startDate\n" + "e0001,hpotter,Harry Potter,1234.00,16-Nov-01\n"
+				+ "e0002,rwesley,Ron Weasley,19234.50,2001-11-16\n" + "e0003,ssnape,Severus Snape,4000.0,2001-11-16\n";
+		byte[] content = csv.getBytes(StandardCharsets.UTF_8);
+
+		// chunks are cut in the middle of rows
+		byte[] chunk0 = Arrays.copyOfRange(content, 0, 45);
+		byte[] chunk1 = Arrays.copyOfRange(content, 45, 100);
+		byte[] chunk2 = Arrays.copyOfRange(content, 100, content.length);
+
+		String sessionId = uploadSessionService.createSession().getSessionId();
+
+		uploadSessionService.putChunk(sessionId, 0, sha256(chunk0), new ByteArrayInputStream(chunk0));
+		uploadSessionService.putChunk(sessionId, 2, sha256(chunk2), new ByteArrayInputStream(chunk2));
+
+		// corrupted transfer is rejected and not kept
+		Throwable exception = assertThrows(BadInputException.class, () -> uploadSessionService.putChunk(sessionId, 1,
+				sha256(chunk1), new ByteArrayInputStream(Arrays.copyOf(chunk1, 20))));
+		assertEquals(String.format(ResponseMessage.MSG_ERR_CHUNK_CHECKSUM, 1), exception.getMessage());
+
+		exception = assertThrows(BadInputException.class, () -> uploadSessionService.commit(sessionId, 3));
+		assertEquals(String.format(ResponseMessage.MSG_ERR_MISSING_CHUNKS, "[1]"), exception.getMessage());
+
+		// retry of the missing chunk only
+		UploadSession uploadSession = uploadSessionService.putChunk(sessionId, 1, sha256(chunk1),
+				new ByteArrayInputStream(chunk1));
+		assertEquals(content.length, uploadSession.getReceivedBytes());
+
+		assertUploadResult(3, 0, 0, uploadSessionService.commit(sessionId, 3));
+		assertEquals(3, employeeRepository.count());
+
+		// committed sessions are removed
+		exception = assertThrows(BadInputException.class, () -> uploadSessionService.getSession(sessionId));
+		assertEquals(ResponseMessage.MSG_ERR_NO_SUCH_UPLOAD_SESSION, exception.getMessage());
+	}
+
+	@Test
+	public void uploadSessionLimitsChunks() throws Exception {
+
+		byte[] chunk = "id,login,name,salary,startDate\n".getBytes(StandardCharsets.UTF_8);
+		byte[] large = new byte[600];
+		Arrays.fill(large, (byte) '#');
+
+		String sessionId = uploadSessionService.createSession().getSessionId();
+
+		// far chunk numbers are rejected before anything is spooled
+		Throwable exception = assertThrows(BadInputException.class, () -> uploadSessionService.putChunk(sessionId,
+				Integer.MAX_VALUE - 1, sha256(chunk), new ByteArrayInputStream(chunk)));
+		assertEquals(String.format(ResponseMessage.MSG_ERR_CHUNK_LIMIT, 10000), exception.getMessage());
+
+		exception = assertThrows(BadInputException.class,
+				() -> uploadSessionService.commit(sessionId, Integer.MAX_VALUE));
+		assertEquals(String.format(ResponseMessage.MSG_ERR_CHUNK_LIMIT, 10000), exception.getMessage());
+
+		// a chunk sent again only counts once against the 1KB limit
+		uploadSessionService.putChunk(sessionId, 0, sha256(large), new ByteArrayInputStream(large));
+		UploadSession uploadSession = uploadSessionService.putChunk(sessionId, 0, sha256(large),
+				new ByteArrayInputStream(large));
+		assertEquals(large.length, uploadSession.getReceivedBytes());
+
+		exception = assertThrows(BadInputException.class,
+				() -> uploadSessionService.putChunk(sessionId, 1, sha256(large), new ByteArrayInputStream(large)));
+		assertEquals(String.format(ResponseMessage.MSG_ERR_FILE_SIZE_LIMIT, "1024B"), exception.getMessage());
+	}
+
+	@Test
+	public void uploadSessionKeepsChunksWhileCommitting() throws Exception {
+
+		byte[] chunk = "id,login,name,salary,startDate\n".getBytes(StandardCharsets.UTF_8);
+
+		String sessionId = uploadSessionService.createSession().getSessionId();
+		UploadSession uploadSession = uploadSessionService.putChunk(sessionId, 0, sha256(chunk),
+				new ByteArrayInputStream(chunk));
+
+		assertTrue(uploadSession.startCommit());
+		try {
+			Throwable exception = assertThrows(BadInputException.class, () -> uploadSessionService.putChunk(sessionId,
+					0, sha256(chunk), new ByteArrayInputStream(chunk)));
+			assertEquals(ResponseMessage.MSG_ERR_UPLOAD_SESSION_COMMITTING, exception.getMessage());
+		} finally {
+			uploadSession.endCommit();
+		}
+
+		assertUploadResult(0, 0, 0, uploadSessionService.commit(sessionId, null));
+	}
+}
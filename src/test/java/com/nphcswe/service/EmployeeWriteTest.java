@@ -0,0 +1,119 @@
+package com.nphcswe.service;
+
+import static com.nphcswe.service.EmployeeFixtures.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.nphcswe.helper.ResponseMessage;
+import com.nphcswe.helper.exception.BadInputException;
+import com.nphcswe.model.Employee;
+import com.nphcswe.repository.EmployeeRepository;
+import com.nphcswe.service.EmployeeSearchTest.SqlCapture;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.nphcswe.service.EmployeeSearchTest$SqlCapture")
+public class EmployeeWriteTest {
+
+	@Autowired
+	private EmployeeService employeeService;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	@AfterEach
+	public void cleanUp() {
+		employeeRepository.deleteAll();
+	}
+
+	@Test
+	public void createIsSingleInsert() {
+
+		SqlCapture.statements.clear();
+		employeeService.saveEmployee(employee("e0001", "login1", 1000));
+
+		assertEquals(1, SqlCapture.statements.size(), SqlCapture.statements.toString());
+		assertTrue(SqlCapture.statements.get(0).startsWith("insert"), SqlCapture.statements.get(0));
+
+		employeeService.saveEmployee(employee("e0002", "login2", 2000));
+
+		Throwable exception = assertThrows(BadInputException.class,
+				() -> employeeService.saveEmployee(employee("e0001", "login3", 3000)));
+		assertEquals(ResponseMessage.MSG_ERR_EMPLOYEE_EXIST, exception.getMessage());
+
+		exception = assertThrows(BadInputException.class,
+				() -> employeeService.saveEmployee(employee("e0003", "login1", 3000)));
+		assertEquals(ResponseMessage.MSG_ERR_NOT_UNIQUE_EMPLOYEE_LOGIN, exception.getMessage());
+
+		assertEquals(2, employeeRepository.count());
+	}
+
+	@Test
+	public void updateIsLockedReadAndUpdate() {
+
+		employeeService.saveEmployee(employee("e0001", "login1", 1000));
+		employeeService.saveEmployee(employee("e0002", "login2", 2000));
+
+		SqlCapture.statements.clear();
+		employeeService.updateEmployee(employee("e0001", "login3", 1500));
+
+		List<String> statements = SqlCapture.statements;
+		assertEquals(2, statements.size(), statements.toString());
+		assertTrue(statements.get(0).startsWith("select") && statements.get(0).contains("for update"),
+				statements.get(0));
+		assertTrue(statements.get(1).startsWith("update"), statements.get(1));
+
+		Employee updated = employeeRepository.findById("e0001").get();
+		assertEquals("login3", updated.getLogin());
+		assertEquals(1500.0, updated.getSalary());
+
+		Throwable exception = assertThrows(BadInputException.class,
+				() -> employeeService.updateEmployee(employee("e0001", "login2", 1500)));
+		assertEquals(ResponseMessage.MSG_ERR_NOT_UNIQUE_EMPLOYEE_LOGIN, exception.getMessage());
+
+		exception = assertThrows(BadInputException.class,
+				() -> employeeService.updateEmployee(employee("e0009", "login9", 1500)));
+		assertEquals(ResponseMessage.MSG_ERR_NO_SUCH_EMPLOYEE, exception.getMessage());
+
+		assertEquals("login3", employeeRepository.findById("e0001").get().getLogin());
+	}
+
+	// the existing rows of each chunk are read with one query and the new rows
+	// are inserted in JDBC batches
+	@Test
+	public void uploadReadsEachChunkOnceAndBatchesInserts() {
+
+		StringBuilder csv = new StringBuilder("id,login,name,salary,startDate\n");
+		for (int i = 0; i < 1500; i++) {
+			csv.append(String.format("u%04d,ulogin%d,Name %d,1000.0,2001-11-16\n", i, i, i));
+		}
+
+		SqlCapture.statements.clear();
+		employeeService.uploadAndSaveEmployee(
+				new MockMultipartFile("file", "data.csv", "text/csv", csv.toString().getBytes(StandardCharsets.UTF_8)));
+		assertEquals(1500, employeeRepository.count());
+
+		List<String> statements = SqlCapture.statements;
+		long chunkReads = statements.stream()
+				.filter(sql -> sql.startsWith("select") && sql.contains("from employees_table")
+						&& sql.contains(".id in (") && !sql.contains("for update"))
+				.count();
+		long inserts = statements.stream().filter(sql -> sql.startsWith("insert into employees_table")).count();
+
+		// two chunks of the default 1000 rows. Batched inserts share the statement
+		// prepared by the flush of their chunk, unbatched ones prepare one per row
+		String summary = statements.stream().map(sql -> sql.substring(0, Math.min(80, sql.length())))
+				.collect(Collectors.toList()).toString();
+		assertEquals(2, chunkReads, summary);
+		assertEquals(2, inserts, summary);
+	}
+}
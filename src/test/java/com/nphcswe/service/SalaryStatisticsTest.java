@@ -0,0 +1,263 @@
+package com.nphcswe.service;
+
+import static com.nphcswe.service.EmployeeFixtures.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nphcswe.model.Employee;
+import com.nphcswe.model.SalarySketch;
+import com.nphcswe.model.SalaryStatistics;
+import com.nphcswe.repository.EmployeeRepository;
+
+@SpringBootTest
+public class SalaryStatisticsTest {
+
+	@Autowired
+	private EmployeeService employeeService;
+
+	@Autowired
+	private SalaryStatisticsService salaryStatisticsService;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	// other tests write through the repository, start from the table
+	@BeforeEach
+	public void setUp() {
+		employeeRepository.deleteAll();
+		salaryStatisticsService.recompute();
+	}
+
+	@AfterEach
+	public void cleanUp() {
+		employeeRepository.deleteAll();
+		salaryStatisticsService.recompute();
+	}
+
+	@Test
+	public void sketchQuantilesWithinAccuracy() {
+
+		Random random = new Random(11);
+		List<Double> salaries = new ArrayList<>();
+		SalarySketch sketch = new SalarySketch();
+
+		for (int i = 0; i < 20000; i++) {
+			double salary = Math.round(random.nextDouble() * 1_000_000) / 100.0;
+			salaries.add(salary);
+			sketch.add(salary);
+		}
+
+		// removing half of the values keeps the sketch exact in count and sum
+		for (int i = 0; i < 10000; i++) {
+			sketch.remove(salaries.remove(salaries.size() - 1));
+		}
+
+		Collections.sort(salaries);
+		assertEquals(salaries.size(), sketch.getCount());
+		assertEquals(salaries.stream().mapToLong(salary -> Math.round(salary * 100)).sum() / 100.0, sketch.getSum());
+
+		for (double quantile : new double[] { 0.5, 0.9, 0.99 }) {
+			double exact = salaries.get((int) Math.ceil(quantile * salaries.size()) - 1);
+			assertEquals(exact, sketch.quantile(quantile), exact * 0.01, "p" + quantile);
+		}
+
+		assertNull(new SalarySketch().getP50());
+	}
+
+	@Test
+	public void sketchKeepsExtremesOfUnchangedSalaries() {
+
+		SalarySketch sketch = new SalarySketch();
+		sketch.add(1000.0);
+		sketch.add(2000.0);
+		sketch.add(123456.78);
+
+		// the max earner's name is updated, the salary stays
+		SalarySketch delta = new SalarySketch();
+		delta.remove(123456.78);
+		delta.add(123456.78);
+		sketch.merge(delta);
+
+		assertEquals(123456.78, sketch.getMax());
+		assertEquals(1000.0, sketch.getMin());
+
+		// the max earner's salary drops, the max is read from the buckets
+		delta = new SalarySketch();
+		delta.remove(123456.78);
+		delta.add(3000.0);
+		sketch.merge(delta);
+
+		assertEquals(3000.0, sketch.getMax(), 3000.0 * 0.01);
+
+		// a delta removing and adding back one bucket leaves no empty bucket
+		// behind
+		delta = new SalarySketch();
+		delta.remove(9000.0);
+		delta.add(9000.0);
+		sketch.merge(delta);
+
+		assertEquals(3, sketch.getCount());
+		assertEquals(3000.0, sketch.getMax(), 3000.0 * 0.01);
+	}
+
+	@Test
+	public void statisticsFollowWrites() throws Exception {
+
+		employeeService.saveEmployee(employee("e0001", 1000, 2001));
+		employeeService.saveEmployee(employee("e0002", 2000, 2001));
+		employeeService.saveEmployee(employee("e0003", 4000, 2002));
+
+		SalaryStatistics statistics = salaryStatisticsService.getStatistics();
+		assertEquals(3, statistics.getOverall().getCount());
+		assertEquals(7000.0, statistics.getOverall().getSum());
+		assertEquals(1000.0, statistics.getOverall().getMin());
+		assertEquals(4000.0, statistics.getOverall().getMax());
+		assertEquals(2, statistics.getByStartYear().get(2001).getCount());
+
+		employeeService.updateEmployee(employee("e0003", 3000, 2003));
+		employeeService.deleteEmployee("e0001");
+
+		String csv = "id,login,name,salary,startDate\n" + "e0002,logine0002,Name e0002,2500.0,2001-03-01\n"
+				+ "e0004,logine0004,Name e0004,500.0,2004-03-01\n";
+		employeeService.uploadAndSaveEmployee(
+				new MockMultipartFile("file", "data.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8)));
+
+		SalaryStatistics updated = salaryStatisticsService.getStatistics();
+		assertEquals(3, updated.getOverall().getCount());
+		assertEquals(6000.0, updated.getOverall().getSum());
+		assertEquals(2000.0, updated.getOverall().getMean());
+		assertTrue(updated.getByStartYear().keySet().containsAll(List.of(2001, 2003, 2004)));
+		assertEquals(3, updated.getByStartYear().size());
+
+		// removed extremes fall back to the buckets, a full recompute makes them
+		// exact again
+		salaryStatisticsService.recompute();
+		SalaryStatistics recomputed = salaryStatisticsService.getStatistics();
+		assertSketch(recomputed.getOverall(), updated.getOverall());
+		assertEquals(recomputed.getByStartYear().keySet(), updated.getByStartYear().keySet());
+		recomputed.getByStartYear().forEach((year, sketch) -> assertSketch(sketch, updated.getByStartYear().get(year)));
+		assertEquals(500.0, recomputed.getOverall().getMin());
+		assertEquals(3000.0, recomputed.getOverall().getMax());
+	}
+
+	// statistics hold exactly the rows of the table
+	private void assertMatchesTable() {
+		List<Employee> employeeList = employeeRepository.findAll();
+		SalarySketch overall = salaryStatisticsService.getStatistics().getOverall();
+
+		assertEquals(employeeList.size(), overall.getCount());
+		assertEquals(employeeList.stream().mapToDouble(Employee::getSalary).sum(), overall.getSum(), 0.001);
+	}
+
+	@Test
+	public void recomputeWaitsForWriteInFlight() throws Exception {
+
+		employeeService.saveEmployee(employee("e0001", 1000, 2001));
+
+		CountDownLatch written = new CountDownLatch(1);
+		CountDownLatch commit = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+			// the insert is done, the transaction commits once released
+			Future<?> write = executor.submit(() -> new TransactionTemplate(transactionManager)
+					.executeWithoutResult(status -> {
+						employeeService.saveEmployee(employee("e0002", 2000, 2002));
+						written.countDown();
+						try {
+							commit.await();
+						} catch (InterruptedException ex) {
+							Thread.currentThread().interrupt();
+						}
+					}));
+			written.await();
+
+			Future<?> recompute = executor.submit(salaryStatisticsService::recompute);
+			assertThrows(TimeoutException.class, () -> recompute.get(200, TimeUnit.MILLISECONDS));
+
+			commit.countDown();
+			write.get(1, TimeUnit.MINUTES);
+			recompute.get(1, TimeUnit.MINUTES);
+		} finally {
+			commit.countDown();
+			executor.shutdown();
+		}
+
+		assertMatchesTable();
+		assertEquals(3000.0, salaryStatisticsService.getStatistics().getOverall().getSum());
+	}
+
+	@Test
+	public void recomputeDuringWritesCountsEachRowOnce() throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> writers = new ArrayList<>();
+
+		for (int t = 0; t < 4; t++) {
+			int thread = t;
+			writers.add(executor.submit(() -> {
+				Random random = new Random(thread);
+				for (int i = 0; i < 100; i++) {
+					String id = "e" + thread + "-" + i;
+					employeeService.saveEmployee(employee(id, 100 + random.nextInt(5000), 2000 + i % 5));
+					if (random.nextBoolean()) {
+						employeeService.updateEmployee(employee(id, 100 + random.nextInt(5000), 2001));
+					}
+					if (random.nextInt(4) == 0) {
+						employeeService.deleteEmployee(id);
+					}
+				}
+				return null;
+			}));
+		}
+
+		try {
+			while (writers.stream().anyMatch(writer -> !writer.isDone())) {
+				salaryStatisticsService.recompute();
+			}
+			for (Future<?> writer : writers) {
+				writer.get(1, TimeUnit.MINUTES);
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertMatchesTable();
+	}
+
+	private static void assertSketch(SalarySketch expected, SalarySketch actual) {
+		assertEquals(expected.getCount(), actual.getCount());
+		assertEquals(expected.getSum(), actual.getSum());
+		assertEquals(expected.getMean(), actual.getMean());
+		assertEquals(expected.getMin(), actual.getMin(), expected.getMin() * 0.01);
+		assertEquals(expected.getMax(), actual.getMax(), expected.getMax() * 0.01);
+		assertEquals(expected.getP50(), actual.getP50(), expected.getP50() * 0.01);
+		assertEquals(expected.getP99(), actual.getP99(), expected.getP99() * 0.01);
+	}
+}
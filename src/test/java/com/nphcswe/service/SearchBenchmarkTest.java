@@ -0,0 +1,101 @@
+package com.nphcswe.service;
+
+import static com.nphcswe.service.EmployeeFixtures.generateCsv;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nphcswe.model.Employee;
+import com.nphcswe.model.UploadResult;
+import com.nphcswe.repository.EmployeeRepository;
+import com.nphcswe.repository.EmployeeSpecification;
+
+/**
+ * Search timings and allocations of the read-only path against managed entities
+ * in a read-write transaction, as an open session in view request loads them,
+ * run with mvn test -Dtest=SearchBenchmarkTest -Dbenchmark=true
+ * -Dbenchmark.rows=1000000
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(properties = { "employee.upload.max-file-size=-1", "spring.jpa.show-sql=false",
+		"logging.level.org.hibernate.type.descriptor.sql.BasicBinder=info", "employee.search.snapshot.enabled=false" })
+public class SearchBenchmarkTest {
+	private static final Logger logger = LogManager.getLogger();
+
+	private static final int ROWS = Integer.getInteger("benchmark.rows", 100000);
+
+	@Autowired
+	private UploadSpoolService uploadSpoolService;
+
+	@Autowired
+	private EmployeeService employeeService;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@AfterEach
+	public void cleanUp() {
+		employeeRepository.deleteAllInBatch();
+	}
+
+	// wall time and bytes allocated by this thread
+	private static long[] measure(Supplier<List<Employee>> search) {
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		List<Employee> employeeList = search.get();
+		long millis = (System.nanoTime() - start) / 1000000;
+		long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+		assertEquals(ROWS, employeeList.size());
+		return new long[] { millis, allocated };
+	}
+
+	@Test
+	public void readOnlyVersusManaged() {
+
+		UploadResult uploadResult = uploadSpoolService
+				.uploadAndSaveEmployee(new ByteArrayInputStream(generateCsv(ROWS)));
+		assertEquals(ROWS, uploadResult.getCreated());
+
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		// entities stay managed until the commit flush checks every one of them
+		Supplier<List<Employee>> managed = () -> transactionTemplate.execute(status -> employeeRepository
+				.findAll(EmployeeSpecification.salaryBetween(0, 10000), Sort.by(Sort.Direction.ASC, "id")));
+
+		Supplier<List<Employee>> readOnly = () -> employeeService
+				.searchEmployeeList(Map.of("minSalary", "0", "maxSalary", "10000")).getResults();
+
+		// warm up both paths once
+		measure(managed);
+		measure(readOnly);
+
+		long[] managedResult = measure(managed);
+		long[] readOnlyResult = measure(readOnly);
+
+		logger.info("rows: {}, managed: {} ms {} MB, read-only: {} ms {} MB", ROWS, managedResult[0],
+				managedResult[1] >> 20, readOnlyResult[0], readOnlyResult[1] >> 20);
+	}
+}
@@ -0,0 +1,95 @@
+package com.nphcswe.service;
+
+import static com.nphcswe.service.EmployeeFixtures.generateCsv;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.nphcswe.model.UploadResult;
+import com.nphcswe.repository.EmployeeRepository;
+
+/**
+ * Startup load from the binary snapshot against a CSV re-upload of the same
+ * rows, run with mvn test -Dtest=StoreBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(properties = { "employee.upload.max-file-size=-1", "spring.jpa.show-sql=false",
+		"logging.level.org.hibernate.type.descriptor.sql.BasicBinder=info" })
+public class StoreBenchmarkTest {
+	private static final Logger logger = LogManager.getLogger();
+
+	private static final int ROWS = Integer.getInteger("benchmark.rows", 200000);
+
+	@Autowired
+	private UploadSpoolService uploadSpoolService;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@TempDir
+	Path tempDir;
+
+	@AfterEach
+	public void cleanUp() {
+		employeeRepository.deleteAllInBatch();
+	}
+
+	private long timeUpload(byte[] csv) {
+		long start = System.nanoTime();
+		UploadResult uploadResult = uploadSpoolService.uploadAndSaveEmployee(new ByteArrayInputStream(csv));
+		long millis = (System.nanoTime() - start) / 1000000;
+
+		assertEquals(ROWS, uploadResult.getCreated());
+		return millis;
+	}
+
+	private long timeLoad(EmployeeStoreService storeService) {
+		employeeRepository.deleteAllInBatch();
+
+		long start = System.nanoTime();
+		assertEquals(ROWS, storeService.load());
+		return (System.nanoTime() - start) / 1000000;
+	}
+
+	@Test
+	public void snapshotLoadVersusCsvUpload() throws Exception {
+
+		byte[] csv = generateCsv(ROWS);
+
+		EmployeeStoreService storeService = new EmployeeStoreService(tempDir.resolve("employees.snapshot").toString());
+		ReflectionTestUtils.setField(storeService, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(storeService, "transactionManager", transactionManager);
+
+		// warm up both paths once
+		timeUpload(csv);
+		storeService.write();
+		timeLoad(storeService);
+		employeeRepository.deleteAllInBatch();
+
+		long uploadMillis = timeUpload(csv);
+		long loadMillis = timeLoad(storeService);
+
+		logger.info("rows: {}, csv: {} bytes uploaded in {} ms, snapshot: {} bytes loaded in {} ms", ROWS, csv.length,
+				uploadMillis, Files.size(tempDir.resolve("employees.snapshot")), loadMillis);
+	}
+}
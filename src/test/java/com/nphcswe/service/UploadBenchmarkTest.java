@@ -0,0 +1,80 @@
+package com.nphcswe.service;
+
+import static com.nphcswe.service.EmployeeFixtures.generateCsv;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.nphcswe.model.UploadResult;
+import com.nphcswe.repository.EmployeeRepository;
+
+/**
+ * End-to-end upload timings on generated files, run with
+ * mvn test -Dtest=UploadBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(properties = { "employee.upload.max-file-size=-1", "spring.jpa.show-sql=false",
+		"logging.level.org.hibernate.type.descriptor.sql.BasicBinder=info" })
+public class UploadBenchmarkTest {
+	private static final Logger logger = LogManager.getLogger();
+
+	private static final int ROWS = Integer.getInteger("benchmark.rows", 200000);
+
+	@Autowired
+	private UploadSpoolService uploadSpoolService;
+
+	@Autowired
+	private EmployeeRepository employeeRepository;
+
+	@AfterEach
+	public void cleanUp() {
+		employeeRepository.deleteAllInBatch();
+	}
+
+	private static byte[] gzip(byte[] content) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (OutputStream out = new GZIPOutputStream(compressed)) {
+			out.write(content);
+		}
+		return compressed.toByteArray();
+	}
+
+	private long timeUpload(byte[] body) {
+		long start = System.nanoTime();
+		UploadResult uploadResult = uploadSpoolService.uploadAndSaveEmployee(new ByteArrayInputStream(body));
+		long millis = (System.nanoTime() - start) / 1000000;
+
+		assertEquals(ROWS, uploadResult.getCreated());
+		employeeRepository.deleteAllInBatch();
+		return millis;
+	}
+
+	@Test
+	public void rawVersusGzip() throws IOException {
+
+		byte[] raw = generateCsv(ROWS);
+		byte[] compressed = gzip(raw);
+
+		// warm up both paths once
+		timeUpload(raw);
+		timeUpload(compressed);
+
+		long rawMillis = timeUpload(raw);
+		long gzipMillis = timeUpload(compressed);
+
+		logger.info("rows: {}, raw: {} bytes in {} ms, gzip: {} bytes ({}:1) in {} ms", ROWS, raw.length, rawMillis,
+				compressed.length, raw.length / compressed.length, gzipMillis);
+	}
+}